@@ -0,0 +1,69 @@
+package com.quan.benchmark;
+
+import com.quan.enums.RpcResponseCodeEnum;
+import com.quan.remoting.constants.RpcConstants;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.remoting.dto.RpcRequest;
+import com.quan.remoting.dto.RpcResponse;
+
+import java.util.UUID;
+
+/**
+ * Description: 压测使用的固定请求/响应数据，保证各个 benchmark 之间的载荷一致
+ * date: 2026/10/18 下午 3:40
+ *
+ * @author Quan
+ */
+public final class BenchmarkPayloads {
+
+    public static final String INTERFACE_NAME = EchoService.class.getName();
+    public static final String METHOD_NAME = "hello";
+    public static final String GROUP = "test1";
+    public static final String VERSION = "version1";
+
+    private BenchmarkPayloads() {
+    }
+
+    public static RpcRequest request() {
+        return request(0);
+    }
+
+    /**
+     * @param textLength length of an extra text parameter, used to push the body over the compress threshold
+     */
+    public static RpcRequest request(int textLength) {
+        return RpcRequest.builder()
+                .requestId(UUID.randomUUID().toString())
+                .interfaceName(INTERFACE_NAME)
+                .methodName(METHOD_NAME)
+                .parameters(new Object[]{"hello rpc-framework", 42, text(textLength)})
+                .paramTypes(new Class<?>[]{String.class, Integer.class, String.class})
+                .group(GROUP)
+                .version(VERSION)
+                .build();
+    }
+
+    public static RpcResponse<Object> response(String requestId) {
+        RpcResponse<Object> response = RpcResponse.success("hello rpc-framework, 42", requestId);
+        response.setCode(RpcResponseCodeEnum.SUCCESS.getCode());
+        return response;
+    }
+
+    public static RpcMessage requestMessage(byte codec, byte compress, int textLength) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .codec(codec)
+                .compress(compress)
+                .data(request(textLength))
+                .build();
+    }
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append("userId=").append(sb.length() % 1000).append(",name=rpc-framework;");
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.quan.benchmark;
+
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.remoting.transport.netty.codec.RpcMessageDecoder;
+import com.quan.remoting.transport.netty.codec.RpcMessageEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: RpcMessageEncoder / RpcMessageDecoder 编解码性能，基于 EmbeddedChannel，不经过网络
+ * <p>
+ * 运行方式：java -jar benchmark/target/benchmarks.jar CodecBenchmark -prof gc
+ * date: 2026/10/18 下午 3:40
+ *
+ * @author Quan
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"KYRO", "PROTOSTUFF", "HESSIAN", "HESSIAN2"})
+    private String serialization;
+
+    @Param({"NONE", "GZIP", "LZ4", "SNAPPY", "ZSTD"})
+    private String compress;
+
+    /**
+     * bodies shorter than rpc.compress.min-body-size are sent uncompressed
+     */
+    @Param({"0", "4096"})
+    private int textLength;
+
+    private EmbeddedChannel encodeChannel;
+    private EmbeddedChannel roundTripChannel;
+    private RpcMessage message;
+
+    @Setup
+    public void setup() {
+        encodeChannel = new EmbeddedChannel(new RpcMessageEncoder());
+        roundTripChannel = new EmbeddedChannel(new RpcMessageEncoder(), new RpcMessageDecoder());
+        message = BenchmarkPayloads.requestMessage(SerializationTypeEnum.valueOf(serialization).getCode(),
+                CompressTypeEnum.valueOf(compress).getCode(), textLength);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodeChannel.finishAndReleaseAll();
+        roundTripChannel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int encode() {
+        encodeChannel.writeOutbound(message);
+        ByteBuf frame = encodeChannel.readOutbound();
+        int length = frame.readableBytes();
+        frame.release();
+        return length;
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        roundTripChannel.writeOutbound(message);
+        ByteBuf frame = roundTripChannel.readOutbound();
+        roundTripChannel.writeInbound(frame);
+        RpcMessage decoded = roundTripChannel.readInbound();
+        return decoded.getData();
+    }
+}
@@ -0,0 +1,12 @@
+package com.quan.benchmark;
+
+/**
+ * Description: 压测使用的服务接口，参数与 {@link BenchmarkPayloads#request(int)} 一致
+ * date: 2026/10/19 上午 2:10
+ *
+ * @author Quan
+ */
+public interface EchoService {
+
+    String hello(String message, Integer number, String text);
+}
@@ -0,0 +1,15 @@
+package com.quan.benchmark;
+
+/**
+ * Description: 只拼接前两个参数，响应大小不随 text 变化
+ * date: 2026/10/19 上午 2:10
+ *
+ * @author Quan
+ */
+public class EchoServiceImpl implements EchoService {
+
+    @Override
+    public String hello(String message, Integer number, String text) {
+        return message + ", " + number;
+    }
+}
@@ -0,0 +1,118 @@
+package com.quan.benchmark;
+
+import com.quan.config.RpcServiceConfig;
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.remoting.dto.RpcResponse;
+import com.quan.remoting.handler.MethodInvokers;
+import com.quan.remoting.transport.netty.TransportUtils;
+import com.quan.remoting.transport.netty.client.NettyRpcClient;
+import com.quan.remoting.transport.netty.codec.RpcMessageDecoder;
+import com.quan.remoting.transport.netty.codec.RpcMessageEncoder;
+import com.quan.remoting.transport.netty.codec.WriteCoalescingHandler;
+import com.quan.remoting.transport.netty.codec.ZstdDictionaryHandler;
+import com.quan.remoting.transport.netty.server.NettyRpcServerHandler;
+import com.quan.serialize.SerializerUtils;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.*;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: 客户端 -> 服务端的完整 RPC 调用（127.0.0.1 回环网络）
+ * <p>
+ * 服务端使用与 NettyRpcServer 相同的 pipeline 和 NettyRpcServerHandler，EchoService 像 NettyRpcServer.registerService
+ * 一样发布，只是不写入注册中心；客户端就是 NettyRpcClient，服务发现固定返回本地端口。
+ * 运行方式：java -jar benchmark/target/benchmarks.jar LoopbackRpcBenchmark -t 8 -prof gc
+ * date: 2026/10/18 下午 3:40
+ *
+ * @author Quan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LoopbackRpcBenchmark {
+
+    @Param({"KYRO", "PROTOSTUFF", "HESSIAN", "HESSIAN2"})
+    private String serialization;
+
+    @Param({"NONE", "GZIP", "LZ4", "SNAPPY", "ZSTD"})
+    private String compress;
+
+    /**
+     * bodies shorter than rpc.compress.min-body-size are sent uncompressed
+     */
+    @Param({"0", "4096"})
+    private int textLength;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private Channel serverChannel;
+    private NettyRpcClient client;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        // 与 NettyRpcServer.registerService 一样创建方法表并注册服务接口的类型
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
+                .service(new EchoServiceImpl())
+                .group(BenchmarkPayloads.GROUP)
+                .version(BenchmarkPayloads.VERSION)
+                .build();
+        MethodInvokers.getInstance().register(rpcServiceConfig);
+        SerializerUtils.registerServiceInterface(EchoService.class);
+
+        // 与 NettyRpcServer 使用相同的传输层（epoll 或 NIO）和 handler
+        bossGroup = TransportUtils.eventLoopGroup(1);
+        workerGroup = TransportUtils.eventLoopGroup(0);
+        serviceHandlerGroup = new DefaultEventExecutorGroup(Runtime.getRuntime().availableProcessors() * 2);
+
+        serverChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(TransportUtils.serverSocketChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline p = ch.pipeline();
+                        p.addLast(new RpcMessageEncoder());
+                        p.addLast(new RpcMessageDecoder());
+                        if (WriteCoalescingHandler.isEnabled()) {
+                            p.addLast(new WriteCoalescingHandler());
+                        }
+                        p.addLast(new ZstdDictionaryHandler());
+                        p.addLast(new NettyRpcServerHandler(serviceHandlerGroup));
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+
+        InetSocketAddress serverAddress = (InetSocketAddress) serverChannel.localAddress();
+        client = new NettyRpcClient(rpcRequest -> serverAddress,
+                SerializationTypeEnum.valueOf(serialization), CompressTypeEnum.valueOf(compress));
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.shutdown();
+        serverChannel.close().syncUninterruptibly();
+        serviceHandlerGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+        bossGroup.shutdownGracefully();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object call() throws Exception {
+        CompletableFuture<RpcResponse<Object>> resultFuture =
+                (CompletableFuture<RpcResponse<Object>>) client.sendRpcRequest(BenchmarkPayloads.request(textLength));
+        return resultFuture.get(5, TimeUnit.SECONDS).getData();
+    }
+}
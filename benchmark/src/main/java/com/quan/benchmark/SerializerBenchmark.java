@@ -0,0 +1,91 @@
+package com.quan.benchmark;
+
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.extension.ExtensionLoader;
+import com.quan.remoting.dto.RpcRequest;
+import com.quan.remoting.dto.RpcResponse;
+import com.quan.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: 各序列化实现对 RpcRequest / RpcResponse 的序列化、反序列化性能
+ * <p>
+ * 运行方式：java -jar benchmark/target/benchmarks.jar SerializerBenchmark -prof gc
+ * date: 2026/10/18 下午 3:40
+ *
+ * @author Quan
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"KYRO", "PROTOSTUFF", "HESSIAN", "HESSIAN2"})
+    private String serialization;
+
+    private Serializer serializer;
+    private RpcRequest request;
+    private RpcResponse<Object> response;
+    private byte[] requestBytes;
+    private byte[] responseBytes;
+    private ByteBuf requestBuf;
+    private ByteBuf scratchBuf;
+
+    @Setup
+    public void setup() {
+        String codecName = SerializationTypeEnum.valueOf(serialization).getName();
+        serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
+        request = BenchmarkPayloads.request();
+        response = BenchmarkPayloads.response(request.getRequestId());
+        requestBytes = serializer.serialize(request);
+        responseBytes = serializer.serialize(response);
+        requestBuf = Unpooled.directBuffer(requestBytes.length).writeBytes(requestBytes);
+        scratchBuf = PooledByteBufAllocator.DEFAULT.directBuffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestBuf.release();
+        scratchBuf.release();
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() {
+        return serializer.serialize(request);
+    }
+
+    @Benchmark
+    public RpcRequest deserializeRequest() {
+        return serializer.deserialize(requestBytes, RpcRequest.class);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() {
+        return serializer.serialize(response);
+    }
+
+    @Benchmark
+    public RpcResponse deserializeResponse() {
+        return serializer.deserialize(responseBytes, RpcResponse.class);
+    }
+
+    @Benchmark
+    public int serializeRequestToByteBuf() {
+        scratchBuf.clear();
+        serializer.serialize(request, scratchBuf);
+        return scratchBuf.readableBytes();
+    }
+
+    @Benchmark
+    public RpcRequest deserializeRequestFromByteBuf() {
+        return serializer.deserialize(requestBuf.duplicate(), RpcRequest.class);
+    }
+}
@@ -11,7 +11,13 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 
-    GZIP((byte) 0x01, "gzip");
+    NONE((byte) 0x00, "none"),
+    GZIP((byte) 0x01, "gzip"),
+    LZ4((byte) 0x02, "lz4"),
+    SNAPPY((byte) 0x03, "snappy"),
+    ZSTD((byte) 0x04, "zstd"),
+    // 带字典的 Zstd，字典 ID 写在 Zstd 帧头中
+    ZSTD_DICT((byte) 0x05, "zstd-dict");
 
     private final byte code;
     private final String name;
@@ -25,4 +31,13 @@ public enum CompressTypeEnum {
         return null;
     }
 
+    public static CompressTypeEnum getByName(String name) {
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.name.equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
 }
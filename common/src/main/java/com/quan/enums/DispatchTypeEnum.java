@@ -0,0 +1,25 @@
+package com.quan.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Description: 服务端执行服务方法的线程模型
+ * date: 2026/10/18 下午 10:40
+ *
+ * @author Quan
+ */
+@AllArgsConstructor
+@Getter
+public enum DispatchTypeEnum {
+
+    // 直接在 IO 线程（event loop）中执行，只适合不阻塞、耗时极短的方法
+    IO("io"),
+    // 所有服务共用的线程池，rpc.server.executor=virtual 时为虚拟线程
+    SHARED("shared"),
+    // 服务或方法独占的有界线程池，队列满时直接返回拒绝响应，慢服务不会拖垮其他服务
+    BULKHEAD("bulkhead");
+
+    private final String name;
+
+}
@@ -8,7 +8,93 @@ import lombok.Getter;
 public enum RpcConfigEnum {
 
     RPC_CONFIG_PATH("rpc.properties"),
-    ZK_ADDRESS("rpc.zookeeper.address");
+    ZK_ADDRESS("rpc.zookeeper.address"),
+    // 消息体小于该字节数时不压缩
+    COMPRESS_MIN_BODY_SIZE("rpc.compress.min-body-size"),
+    // 客户端请求使用的压缩类型
+    COMPRESS_TYPE("rpc.compress.type"),
+    // 离线训练好的 Zstd 字典所在目录，在线训练的字典也保存到这里
+    ZSTD_DICT_DIR("rpc.compress.zstd.dict-dir"),
+    // 每个服务采样多少个消息体后开始训练字典
+    ZSTD_DICT_SAMPLES("rpc.compress.zstd.dict-samples"),
+    // 训练出的字典大小
+    ZSTD_DICT_SIZE("rpc.compress.zstd.dict-size"),
+    // 对端发来的字典最大字节数，超过的不加载
+    ZSTD_DICT_MAX_SIZE("rpc.compress.zstd.max-dict-size"),
+    // 每条连接最多加载对端的多少个字典
+    ZSTD_DICT_MAX_PEER("rpc.compress.zstd.max-peer-dicts"),
+    // 按方法自适应选择压缩算法
+    COMPRESS_ADAPTIVE("rpc.compress.adaptive"),
+    // 自适应压缩估算传输耗时使用的网络带宽（MB/s）
+    COMPRESS_ADAPTIVE_BANDWIDTH("rpc.compress.adaptive.bandwidth-mb"),
+    // 定期把运行指标打印到日志的间隔（秒），0 表示不打印
+    METRICS_LOG_INTERVAL("rpc.metrics.log-interval"),
+    // 合并写：攒够多少条消息后 flush，0 表示不合并
+    FLUSH_MAX_WRITES("rpc.flush.max-writes"),
+    // 合并写：收到 flush 后最多等待的微秒数
+    FLUSH_MAX_DELAY_MICROS("rpc.flush.max-delay-micros"),
+    // 合并写：把同一次 flush 的多条消息打包成一个 batch 帧
+    FLUSH_BATCH("rpc.flush.batch"),
+    // 客户端到每个服务地址的连接数
+    CLIENT_CONNECTIONS("rpc.client.connections"),
+    // 请求超时时间（毫秒），可以用 rpc.client.timeout.服务名 单独配置某个服务
+    CLIENT_TIMEOUT("rpc.client.timeout"),
+    // 幂等方法名，逗号分隔，连接断开时自动换一个服务地址重试，用 rpc.client.idempotent.服务名 配置某个服务
+    CLIENT_IDEMPOTENT("rpc.client.idempotent"),
+    // 幂等方法最多重试的次数
+    CLIENT_RETRIES("rpc.client.retries"),
+    // 负载均衡策略：p2c、roundRobin、random
+    LOADBALANCE("rpc.loadbalance"),
+    // 一致性哈希使用第几个参数计算哈希
+    LOADBALANCE_HASH_ARGUMENT("rpc.loadbalance.hash-argument"),
+    // 一致性哈希每个服务地址的虚拟节点数
+    LOADBALANCE_HASH_NODES("rpc.loadbalance.hash-nodes"),
+    // 是否按 RTT 自适应限制每个服务地址的并发请求数
+    CLIENT_LIMIT_ENABLED("rpc.client.limit.enabled"),
+    // 每个服务地址的初始并发上限
+    CLIENT_LIMIT_INITIAL("rpc.client.limit.initial"),
+    // 每个服务地址的最小并发上限
+    CLIENT_LIMIT_MIN("rpc.client.limit.min"),
+    // 每个服务地址的最大并发上限
+    CLIENT_LIMIT_MAX("rpc.client.limit.max"),
+    // 超过并发上限时每个服务地址最多排队的请求数
+    CLIENT_LIMIT_QUEUE_SIZE("rpc.client.limit.queue-size"),
+    // 超过并发上限的请求最多排队的毫秒数
+    CLIENT_LIMIT_MAX_WAIT("rpc.client.limit.max-wait-millis"),
+    // 服务地址没有在途请求超过该秒数后，移除客户端为它保存的状态
+    CLIENT_ENDPOINT_IDLE("rpc.client.endpoint-idle-seconds"),
+    // Linux 上有 native 库时使用 epoll 传输，false 时总是使用 NIO
+    TRANSPORT_EPOLL("rpc.transport.epoll"),
+    // epoll 使用边缘触发（true）还是水平触发（false）
+    TRANSPORT_EPOLL_EDGE_TRIGGERED("rpc.transport.epoll.edge-triggered"),
+    // epoll 连接开启 TCP_QUICKACK
+    TRANSPORT_EPOLL_TCP_QUICKACK("rpc.transport.epoll.tcp-quickack"),
+    // epoll 连接的 SO_BUSY_POLL（微秒），0 表示不开启
+    TRANSPORT_EPOLL_BUSY_POLL("rpc.transport.epoll.busy-poll-micros"),
+    // 服务端监听端口
+    SERVER_PORT("rpc.server.port"),
+    // 服务端 accept 队列长度
+    SERVER_BACKLOG("rpc.server.backlog"),
+    // 服务端连接写缓冲的低水位（字节），写缓冲降到低水位以下时恢复读取请求
+    SERVER_WRITE_BUFFER_LOW("rpc.server.write-buffer.low-water-mark"),
+    // 服务端连接写缓冲的高水位（字节），写缓冲超过高水位时暂停读取请求
+    SERVER_WRITE_BUFFER_HIGH("rpc.server.write-buffer.high-water-mark"),
+    // 连接不可写时每个连接最多暂存的响应数，超过后关闭连接
+    SERVER_PENDING_RESPONSES("rpc.server.pending-responses"),
+    // 服务端用 SO_REUSEPORT 在同一端口上监听的 acceptor 数量，只在 epoll 下生效
+    SERVER_ACCEPTORS("rpc.server.acceptors"),
+    // 服务方法的执行方式：pool 线程池，adaptive 按排队时间自动调整大小的线程池，virtual 每个请求一个虚拟线程（Java 21+）
+    SERVER_EXECUTOR("rpc.server.executor"),
+    // adaptive 线程池的最小线程数
+    SERVER_EXECUTOR_MIN_THREADS("rpc.server.executor.min-threads"),
+    // adaptive 线程池的最大线程数
+    SERVER_EXECUTOR_MAX_THREADS("rpc.server.executor.max-threads"),
+    // adaptive 线程池的目标排队时间（毫秒）
+    SERVER_EXECUTOR_TARGET_WAIT("rpc.server.executor.target-wait-millis"),
+    // adaptive 线程池调整线程数的周期（毫秒）
+    SERVER_EXECUTOR_TUNE_INTERVAL("rpc.server.executor.tune-interval-millis"),
+    // 虚拟线程 pinned 超过该毫秒数才计入指标
+    SERVER_VIRTUAL_PINNED_THRESHOLD("rpc.server.virtual.pinned-threshold-millis");
 
     private final String propertyValue;
 
@@ -17,7 +17,10 @@ public enum RpcErrorMessageEnum {
     SERVICE_CAN_NOT_BE_FOUND("没有找到指定的服务"),
     SERVICE_NOT_IMPLEMENT_ANY_INTERFACE("注册的服务没有实现任何接口"),
     REQUEST_NOT_MATCH_RESPONSE("返回结果错误！请求和返回的相应不匹配"),
-    REGISTER_SERVICE_FAILED("注册服务失败");
+    REGISTER_SERVICE_FAILED("注册服务失败"),
+    REQUEST_TIMEOUT("请求超时"),
+    CONNECTION_CLOSED("连接已断开"),
+    CONCURRENCY_LIMIT_EXCEEDED("超过服务地址的并发限制");
 
     private final String message;
 
@@ -14,7 +14,8 @@ import lombok.ToString;
 public enum RpcResponseCodeEnum {
 
     SUCCESS(200, "The remote call is successful"),
-    FAIL(500, "The remote call is fail");
+    FAIL(500, "The remote call is fail"),
+    REJECTED(503, "The remote call is rejected, the service is busy");
     private final int code;
 
     private final String message;
@@ -13,7 +13,8 @@ public enum SerializationTypeEnum {
 
     KYRO((byte) 0x01, "kyro"),
     PROTOSTUFF((byte) 0x02, "protostuff"),
-    HESSIAN((byte) 0X03, "hessian");
+    HESSIAN((byte) 0X03, "hessian"),
+    HESSIAN2((byte) 0X04, "hessian2");
 
     private final byte code;
     private final String name;
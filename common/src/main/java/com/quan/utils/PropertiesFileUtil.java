@@ -0,0 +1,45 @@
+package com.quan.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Description: 读取 classpath 下的 properties 配置文件
+ * date: 2026/10/18 下午 5:30
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class PropertiesFileUtil {
+
+    private PropertiesFileUtil() {
+    }
+
+    /**
+     * @param fileName file name under the classpath root, eg: rpc.properties
+     * @return null if the file does not exist or can not be read
+     */
+    public static Properties readPropertiesFile(String fileName) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = PropertiesFileUtil.class.getClassLoader();
+        }
+        try (InputStream in = classLoader.getResourceAsStream(fileName)) {
+            if (in == null) {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(new InputStreamReader(in, UTF_8));
+            return properties;
+        } catch (IOException e) {
+            log.error("occur exception when read properties file [{}]", fileName);
+            return null;
+        }
+    }
+}
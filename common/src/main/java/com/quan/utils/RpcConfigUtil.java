@@ -0,0 +1,106 @@
+package com.quan.utils;
+
+import com.quan.enums.RpcConfigEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Properties;
+
+/**
+ * Description: rpc.properties 中的配置项，文件只在第一次使用时读取一次
+ * date: 2026/10/18 下午 5:30
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class RpcConfigUtil {
+
+    private RpcConfigUtil() {
+    }
+
+    public static String getString(RpcConfigEnum config, String defaultValue) {
+        String value = PropertiesHolder.PROPERTIES.getProperty(config.getPropertyValue());
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(RpcConfigEnum config, int defaultValue) {
+        String value = getString(config, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value [{}] of [{}], use default value [{}]", value, config.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(RpcConfigEnum config, long defaultValue) {
+        String value = getString(config, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value [{}] of [{}], use default value [{}]", value, config.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * read {@code config.subKey} first, then {@code config}, e.g. a per service value overriding the global one
+     */
+    public static String getString(RpcConfigEnum config, String subKey, String defaultValue) {
+        String value = PropertiesHolder.PROPERTIES.getProperty(config.getPropertyValue() + "." + subKey);
+        return value == null || value.trim().isEmpty() ? getString(config, defaultValue) : value.trim();
+    }
+
+    /**
+     * read {@code config.subKey} first, then {@code config}, e.g. a per service value overriding the global one
+     */
+    public static long getLong(RpcConfigEnum config, String subKey, long defaultValue) {
+        long globalValue = getLong(config, defaultValue);
+        String value = PropertiesHolder.PROPERTIES.getProperty(config.getPropertyValue() + "." + subKey);
+        if (value == null || value.trim().isEmpty()) {
+            return globalValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value [{}] of [{}.{}], use [{}]", value, config.getPropertyValue(), subKey, globalValue);
+            return globalValue;
+        }
+    }
+
+    /**
+     * read {@code config.subKey} first, then {@code config}, e.g. a per service value overriding the global one
+     */
+    public static int getInt(RpcConfigEnum config, String subKey, int defaultValue) {
+        int globalValue = getInt(config, defaultValue);
+        String value = PropertiesHolder.PROPERTIES.getProperty(config.getPropertyValue() + "." + subKey);
+        if (value == null || value.trim().isEmpty()) {
+            return globalValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value [{}] of [{}.{}], use [{}]", value, config.getPropertyValue(), subKey, globalValue);
+            return globalValue;
+        }
+    }
+
+    public static boolean getBoolean(RpcConfigEnum config, boolean defaultValue) {
+        String value = getString(config, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private static final class PropertiesHolder {
+        private static final Properties PROPERTIES = load();
+
+        private static Properties load() {
+            Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+            return properties == null ? new Properties() : properties;
+        }
+    }
+}
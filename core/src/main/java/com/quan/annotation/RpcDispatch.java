@@ -0,0 +1,36 @@
+package com.quan.annotation;
+
+import com.quan.enums.DispatchTypeEnum;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Description: 指定服务或方法的线程模型，优先级：方法 > 类 > RpcServiceConfig
+ * <p>
+ * 可以标注在服务实现类、服务接口以及它们的方法上；标注在方法上的 BULKHEAD 使用该方法独占的线程池，
+ * 标注在类上或者在 RpcServiceConfig 中配置的 BULKHEAD 由整个服务的方法共用一个线程池
+ * date: 2026/10/18 下午 10:40
+ *
+ * @author Quan
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface RpcDispatch {
+
+    DispatchTypeEnum value();
+
+    /**
+     * threads of the bulkhead pool, 0 means the number of cpus
+     */
+    int threads() default 0;
+
+    /**
+     * queue size of the bulkhead pool, 0 means no queue
+     */
+    int queueSize() default 0;
+}
@@ -0,0 +1,194 @@
+package com.quan.compress;
+
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.metrics.RpcMetrics;
+import com.quan.utils.RpcConfigUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Description: 按服务方法自适应选择压缩算法
+ * <p>
+ * 每个方法对每种算法记录压缩率和每字节耗时的滑动平均，把压缩耗时和省下的网络传输时间放在一起比较，
+ * 选总代价最小的算法；所有算法都压不动（图片、随机 ID 等）时选择不压缩。
+ * 开始时每种算法先各试几次，之后每隔一段时间重新试一次，以适应载荷的变化
+ * date: 2026/10/18 下午 6:50
+ *
+ * @author Quan
+ */
+public final class AdaptiveCompressSelector {
+
+    private static final CompressTypeEnum[] CANDIDATES = {
+            CompressTypeEnum.LZ4, CompressTypeEnum.SNAPPY, CompressTypeEnum.ZSTD, CompressTypeEnum.GZIP
+    };
+    private static final AdaptiveCompressSelector INSTANCE = new AdaptiveCompressSelector();
+    /**
+     * 每种算法至少试这么多次才参与选择
+     */
+    private static final int PROBE_TIMES = 8;
+    /**
+     * 每隔这么多帧用下一个候选算法重新测一次
+     */
+    private static final int REPROBE_INTERVAL = 256;
+    /**
+     * 压缩后仍大于原始大小的该比例，认为压不动
+     */
+    private static final double INCOMPRESSIBLE_RATIO = 0.9;
+    private static final double EWMA_ALPHA = 0.2;
+
+    /**
+     * 传输一个字节的时间，由 rpc.compress.adaptive.bandwidth-mb（MB/s）换算
+     */
+    private final double networkNanosPerByte =
+            1000.0 / Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_ADAPTIVE_BANDWIDTH, 100));
+    private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    private AdaptiveCompressSelector() {
+    }
+
+    public static AdaptiveCompressSelector getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param method service name and method name of the message
+     * @return the compress type to use for the next body of the method
+     */
+    public byte select(String method) {
+        return stats(method).select();
+    }
+
+    /**
+     * record the result of compressing a body of the method
+     */
+    public void record(String method, byte compressType, int rawLength, int compressedLength, long nanos) {
+        stats(method).record(compressType, rawLength, compressedLength, nanos);
+    }
+
+    private MethodStats stats(String method) {
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            stats = methods.computeIfAbsent(method, key -> {
+                MethodStats created = new MethodStats();
+                RpcMetrics.gauge("compress.adaptive." + key, created::toMap);
+                return created;
+            });
+        }
+        return stats;
+    }
+
+    private final class MethodStats {
+        private final AtomicLong frames = new AtomicLong();
+        private final int[] samples = new int[CANDIDATES.length];
+        private final double[] ratios = new double[CANDIDATES.length];
+        private final double[] nanosPerByte = new double[CANDIDATES.length];
+        private final AtomicLongArray decisions = new AtomicLongArray(CANDIDATES.length + 1);
+        private volatile boolean probing = true;
+        private volatile byte choice = CompressTypeEnum.NONE.getCode();
+
+        private byte select() {
+            long frame = frames.incrementAndGet();
+            byte selected;
+            if (probing) {
+                selected = probe();
+            } else if (frame % REPROBE_INTERVAL == 0) {
+                selected = CANDIDATES[(int) (frame / REPROBE_INTERVAL % CANDIDATES.length)].getCode();
+            } else {
+                selected = choice;
+            }
+            decisions.incrementAndGet(index(selected) + 1);
+            return selected;
+        }
+
+        private synchronized byte probe() {
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                if (samples[i] < PROBE_TIMES) {
+                    // 先占位，并发的其他帧去试下一个算法
+                    samples[i]++;
+                    return CANDIDATES[i].getCode();
+                }
+            }
+            return choice;
+        }
+
+        private synchronized void record(byte compressType, int rawLength, int compressedLength, long nanos) {
+            int i = index(compressType);
+            if (i < 0 || rawLength <= 0) {
+                return;
+            }
+            double ratio = (double) compressedLength / rawLength;
+            double cost = (double) nanos / rawLength;
+            if (ratios[i] == 0) {
+                ratios[i] = ratio;
+                nanosPerByte[i] = cost;
+            } else if (probing) {
+                // 试探阶段的耗时受 JIT 预热、native 库加载影响，取最小值
+                ratios[i] += EWMA_ALPHA * (ratio - ratios[i]);
+                nanosPerByte[i] = Math.min(nanosPerByte[i], cost);
+            } else {
+                ratios[i] += EWMA_ALPHA * (ratio - ratios[i]);
+                nanosPerByte[i] += EWMA_ALPHA * (cost - nanosPerByte[i]);
+            }
+            if (!probing) {
+                samples[i]++;
+            }
+            choose();
+        }
+
+        private void choose() {
+            // 不压缩的代价：整个消息体的传输时间
+            double bestCost = networkNanosPerByte;
+            byte best = CompressTypeEnum.NONE.getCode();
+            boolean measured = true;
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                if (samples[i] < PROBE_TIMES) {
+                    measured = false;
+                }
+                if (ratios[i] == 0) {
+                    measured = false;
+                    continue;
+                }
+                if (ratios[i] > INCOMPRESSIBLE_RATIO) {
+                    continue;
+                }
+                double cost = nanosPerByte[i] + ratios[i] * networkNanosPerByte;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = CANDIDATES[i].getCode();
+                }
+            }
+            choice = best;
+            if (measured) {
+                probing = false;
+            }
+        }
+
+        private int index(byte compressType) {
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                if (CANDIDATES[i].getCode() == compressType) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("choice", CompressTypeEnum.getName(choice));
+            map.put("frames", frames.get());
+            map.put("none.selected", decisions.get(0));
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                String name = CANDIDATES[i].getName();
+                map.put(name + ".selected", decisions.get(i + 1));
+                map.put(name + ".ratio", String.format("%.3f", ratios[i]));
+                map.put(name + ".nanosPerByte", String.format("%.2f", nanosPerByte[i]));
+            }
+            return map;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.quan.compress;
 
 
 import com.quan.extension.SPI;
+import com.quan.remoting.constants.RpcConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * @author wangtao .
@@ -11,8 +14,44 @@ import com.quan.extension.SPI;
 @SPI
 public interface Compress {
 
+    /**
+     * 解压后的消息体不能比一个帧还大，从报文中读到的原始长度超过它时在分配内存前拒绝
+     */
+    int MAX_DECOMPRESSED_LENGTH = RpcConstants.MAX_FRAME_LENGTH;
+
     byte[] compress(byte[] bytes);
 
 
     byte[] decompress(byte[] bytes);
+
+    /**
+     * compress all readable bytes of {@code in} and append the result to {@code out}, {@code in} is fully consumed.
+     * the default implementation goes through byte[], implementations should override it to stream between buffers
+     */
+    default void compress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        out.writeBytes(compress(bytes));
+    }
+
+    /**
+     * decompress all readable bytes of {@code in} and append the result to {@code out}, {@code in} is fully consumed
+     */
+    default void decompress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        out.writeBytes(decompress(bytes));
+    }
+
+    /**
+     * @param length the original length read from the compressed data
+     * @return the length as an int
+     * @throws RuntimeException if the length is negative or larger than {@link #MAX_DECOMPRESSED_LENGTH}
+     */
+    static int checkDecompressedLength(long length) {
+        if (length < 0 || length > MAX_DECOMPRESSED_LENGTH) {
+            throw new RuntimeException("invalid decompressed length: " + length);
+        }
+        return (int) length;
+    }
 }
@@ -0,0 +1,99 @@
+package com.quan.compress.lz4;
+
+import com.quan.compress.Compress;
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Description: LZ4 块压缩，压缩/解压速度快，适合对 CPU 敏感的场景
+ * <pre>
+ *   +---------------------------+----------------------+
+ *   | 4B original length        | lz4 compressed block |
+ *   +---------------------------+----------------------+
+ * </pre>
+ * date: 2026/10/18 下午 5:30
+ *
+ * @author Quan
+ */
+public class Lz4Compress implements Compress {
+
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    /**
+     * 输入来自网络，fast 解压器信任输入中的长度，遇到伪造的数据会越界读写；safe 解压器按输入和输出的边界检查
+     */
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        int maxLength = compressor.maxCompressedLength(bytes.length);
+        byte[] compressed = new byte[LENGTH_FIELD_SIZE + maxLength];
+        ByteBuffer.wrap(compressed).putInt(bytes.length);
+        int compressedLength = compressor.compress(bytes, 0, bytes.length, compressed, LENGTH_FIELD_SIZE, maxLength);
+        byte[] result = new byte[LENGTH_FIELD_SIZE + compressedLength];
+        System.arraycopy(compressed, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        int originalLength = Compress.checkDecompressedLength(ByteBuffer.wrap(bytes).getInt());
+        byte[] result = new byte[originalLength];
+        int length = decompressor.decompress(bytes, LENGTH_FIELD_SIZE, bytes.length - LENGTH_FIELD_SIZE, result, 0, originalLength);
+        checkLength(length, originalLength);
+        return result;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = compressor.maxCompressedLength(length);
+        out.ensureWritable(LENGTH_FIELD_SIZE + maxLength);
+        if (in.nioBufferCount() != 1 || out.nioBufferCount() != 1) {
+            Compress.super.compress(in, out);
+            return;
+        }
+        out.writeInt(length);
+        // 直接在 ByteBuf 的内存上压缩
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxLength);
+        int compressedLength = compressor.compress(src, src.position(), length, dest, dest.position(), maxLength);
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + compressedLength);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        int originalLength = Compress.checkDecompressedLength(in.readInt());
+        out.ensureWritable(originalLength);
+        if (in.nioBufferCount() != 1 || out.nioBufferCount() != 1) {
+            in.readerIndex(in.readerIndex() - LENGTH_FIELD_SIZE);
+            Compress.super.decompress(in, out);
+            return;
+        }
+        int compressedLength = in.readableBytes();
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), compressedLength);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), originalLength);
+        int length = decompressor.decompress(src, src.position(), compressedLength, dest, dest.position(), originalLength);
+        checkLength(length, originalLength);
+        in.skipBytes(compressedLength);
+        out.writerIndex(out.writerIndex() + originalLength);
+    }
+
+    private static void checkLength(int length, int originalLength) {
+        if (length != originalLength) {
+            throw new RuntimeException("lz4 decompressed " + length + " bytes, expected " + originalLength);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.quan.compress.snappy;
+
+import com.quan.compress.Compress;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * Description: Snappy 压缩，基于 netty 自带的纯 Java 实现，直接在 ByteBuf 上读写，不依赖本地库
+ * <p>
+ * netty 的编码器在哈希表中用 short 保存偏移，一次最多压缩 32767 字节（与 SnappyFrameEncoder 一样），
+ * 消息体按这个大小分块，每块单独压缩：
+ * <pre>
+ *   +-----------------------------+-------------------------+-----
+ *   | 3B compressed block length  | snappy compressed block | ...
+ *   +-----------------------------+-------------------------+-----
+ * </pre>
+ * date: 2026/10/18 下午 5:30
+ *
+ * @author Quan
+ */
+public class SnappyCompress implements Compress {
+
+    private static final int MAX_BLOCK_SIZE = Short.MAX_VALUE;
+    private static final int BLOCK_LENGTH_FIELD_SIZE = 3;
+
+    /**
+     * Snappy 编解码器内部有状态，不是线程安全的
+     */
+    private final ThreadLocal<Snappy> snappyThreadLocal = ThreadLocal.withInitial(Snappy::new);
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer(bytes.length);
+        compress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        // Snappy 按报文中的原始长度扩容，最大容量限制住它
+        ByteBuf out = Unpooled.buffer(bytes.length * 2, MAX_DECOMPRESSED_LENGTH);
+        decompress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        Snappy snappy = snappyThreadLocal.get();
+        while (in.isReadable()) {
+            ByteBuf block = in.readSlice(Math.min(in.readableBytes(), MAX_BLOCK_SIZE));
+            int lengthIndex = out.writerIndex();
+            out.writeMedium(0);
+            try {
+                snappy.encode(block, out, block.readableBytes());
+            } finally {
+                snappy.reset();
+            }
+            out.setMedium(lengthIndex, out.writerIndex() - lengthIndex - BLOCK_LENGTH_FIELD_SIZE);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        Snappy snappy = snappyThreadLocal.get();
+        while (in.isReadable()) {
+            int length = in.readUnsignedMedium();
+            if (length > in.readableBytes()) {
+                throw new RuntimeException("invalid snappy block length: " + length);
+            }
+            // 解码器会读完输入，每块单独交给它；块内的回溯偏移只指向本块，reset 后从头计数
+            ByteBuf block = in.readSlice(length);
+            try {
+                snappy.decode(block, out);
+            } finally {
+                snappy.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.quan.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.quan.compress.Compress;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Description: Zstd 压缩，压缩率接近 GZIP，速度远快于 GZIP
+ * date: 2026/10/18 下午 5:30
+ *
+ * @author Quan
+ */
+public class ZstdCompress implements Compress {
+
+    /**
+     * RPC 报文较小，使用速度优先的压缩等级
+     */
+    static final int COMPRESSION_LEVEL = 1;
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return Zstd.compress(bytes, COMPRESSION_LEVEL);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return Zstd.decompress(bytes, Compress.checkDecompressedLength(Zstd.decompressedSize(bytes)));
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = (int) Zstd.compressBound(length);
+        out.ensureWritable(maxLength);
+        if (!isDirect(in, out)) {
+            Compress.super.compress(in, out);
+            return;
+        }
+        // 直接在堆外内存上压缩
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxLength);
+        long compressedLength = Zstd.compressDirectByteBuffer(dest, dest.position(), maxLength,
+                src, src.position(), length, COMPRESSION_LEVEL);
+        if (Zstd.isError(compressedLength)) {
+            throw new RuntimeException("zstd compress error: " + Zstd.getErrorName(compressedLength));
+        }
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + (int) compressedLength);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (!isDirect(in, out)) {
+            Compress.super.decompress(in, out);
+            return;
+        }
+        int length = in.readableBytes();
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        int originalLength = Compress.checkDecompressedLength(Zstd.decompressedDirectByteBufferSize(src, src.position(), length));
+        out.ensureWritable(originalLength);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), originalLength);
+        long decompressedLength = Zstd.decompressDirectByteBuffer(dest, dest.position(), originalLength,
+                src, src.position(), length);
+        if (Zstd.isError(decompressedLength)) {
+            throw new RuntimeException("zstd decompress error: " + Zstd.getErrorName(decompressedLength));
+        }
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + (int) decompressedLength);
+    }
+
+    boolean isDirect(ByteBuf in, ByteBuf out) {
+        return in.isDirect() && out.isDirect() && in.nioBufferCount() == 1 && out.nioBufferCount() == 1;
+    }
+}
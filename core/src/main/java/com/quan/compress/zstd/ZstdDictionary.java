@@ -0,0 +1,31 @@
+package com.quan.compress.zstd;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * Description: 某个服务的 Zstd 字典，连接建立时发送给对端，对端确认加载后才会用它压缩
+ * date: 2026/10/18 下午 6:10
+ *
+ * @author Quan
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString(exclude = "content")
+public class ZstdDictionary implements Serializable {
+    private static final long serialVersionUID = 4136298071425963410L;
+    /**
+     * dictionary id, the same id is written into every zstd frame compressed with it
+     */
+    private int id;
+    private String serviceName;
+    /**
+     * dictionary content, null in the ack message
+     */
+    private byte[] content;
+}
@@ -0,0 +1,277 @@
+package com.quan.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description: Zstd 字典管理
+ * <p>
+ * 每个服务一个字典，来源有两种：启动时从 rpc.compress.zstd.dict-dir 加载离线训练好的字典（文件名为 服务名.dict），
+ * 或者对该服务的前 N 个消息体采样后在线训练。本端训练的字典用于压缩，对端发来的字典只用于解压，都按字典 ID 索引。
+ * 对端的字典按加载它的连接计数，最后一条连接断开时移除，不会随着连过来的对端越来越多
+ * date: 2026/10/18 下午 6:10
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class ZstdDictionaryManager {
+
+    private static final String DICTIONARY_SUFFIX = ".dict";
+    /**
+     * 字典只能帮助消息体开头的部分，每个样本只保留这么长的前缀，大消息体不会占用大量内存
+     */
+    private static final int MAX_SAMPLE_SIZE = 16 * 1024;
+    /**
+     * zstd 建议的样本总量约为字典大小的 100 倍，超过后不再采样
+     */
+    private static final int SAMPLE_BYTES_PER_DICTIONARY_BYTE = 100;
+    private static final ZstdDictionaryManager INSTANCE = new ZstdDictionaryManager();
+
+    private final int sampleCount = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_SAMPLES, 1000);
+    private final int dictionarySize = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_SIZE, 16 * 1024);
+    private final String dictionaryDir = RpcConfigUtil.getString(RpcConfigEnum.ZSTD_DICT_DIR, null);
+    private final int maxDictionarySize = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_MAX_SIZE, 1024 * 1024);
+
+    /**
+     * 本端用于压缩的字典，按服务名索引
+     */
+    private final Map<String, ZstdDictionary> localDictionaries = new ConcurrentHashMap<>();
+    private final Map<Integer, ZstdDictCompress> compressDictionaries = new ConcurrentHashMap<>();
+    private final Map<Integer, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+    /**
+     * 对端发来的字典，记录有几条连接加载了它
+     */
+    private final Map<Integer, PeerDictionary> peerDictionaries = new ConcurrentHashMap<>();
+    private final Map<String, Sampler> samplers = new ConcurrentHashMap<>();
+    /**
+     * 训练比较耗时，放到单独的线程，不阻塞 IO 线程
+     */
+    private final ExecutorService trainer = Executors.newSingleThreadExecutor(
+            new DefaultThreadFactory("zstd-dict-trainer", true));
+
+    private ZstdDictionaryManager() {
+        loadDictionaries();
+    }
+
+    public static ZstdDictionaryManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the dictionary used to compress the messages of the service, null if it is not ready yet
+     */
+    public ZstdDictionary getDictionary(String serviceName) {
+        return serviceName == null ? null : localDictionaries.get(serviceName);
+    }
+
+    public Collection<ZstdDictionary> getDictionaries() {
+        return localDictionaries.values();
+    }
+
+    ZstdDictCompress getCompressDictionary(int id) {
+        return compressDictionaries.get(id);
+    }
+
+    ZstdDictDecompress getDecompressDictionary(int id) {
+        ZstdDictDecompress dictionary = decompressDictionaries.get(id);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        PeerDictionary peerDictionary = peerDictionaries.get(id);
+        return peerDictionary == null ? null : peerDictionary.dictionary;
+    }
+
+    /**
+     * record the uncompressed body as a training sample of the service, {@code body} is not consumed.
+     * once enough samples are collected the dictionary is trained in the background
+     */
+    public void sample(String serviceName, ByteBuf body) {
+        if (serviceName == null || sampleCount <= 0 || localDictionaries.containsKey(serviceName)) {
+            return;
+        }
+        Sampler sampler = samplers.computeIfAbsent(serviceName, key -> new Sampler());
+        if (sampler.add(body)) {
+            trainer.execute(() -> {
+                train(serviceName, sampler.samples);
+                sampler.samples.clear();
+            });
+        }
+    }
+
+    /**
+     * train a dictionary from the samples and use it to compress the messages of the service
+     *
+     * @return the dictionary, null if the training failed
+     */
+    public ZstdDictionary train(String serviceName, List<byte[]> samples) {
+        int totalSize = 0;
+        for (byte[] sample : samples) {
+            totalSize += sample.length;
+        }
+        ZstdDictTrainer dictTrainer = new ZstdDictTrainer(totalSize, dictionarySize);
+        for (byte[] sample : samples) {
+            dictTrainer.addSample(sample);
+        }
+        byte[] content;
+        try {
+            content = dictTrainer.trainSamples();
+        } catch (RuntimeException e) {
+            // 样本太少或者太相似时训练会失败，该服务继续使用不带字典的压缩
+            log.warn("Train zstd dictionary of [{}] failed: {}", serviceName, e.getMessage());
+            return null;
+        }
+        ZstdDictionary dictionary = addLocalDictionary(serviceName, content);
+        if (dictionary != null) {
+            log.info("Zstd dictionary [{}] of [{}] trained from [{}] samples, size [{}]",
+                    dictionary.getId(), serviceName, samples.size(), content.length);
+            saveDictionary(dictionary);
+        }
+        return dictionary;
+    }
+
+    /**
+     * load a dictionary offered by the peer of a connection, it is only used to decompress.
+     * every successful retain must be released once when the connection is closed
+     *
+     * @return false if the dictionary is invalid or too large
+     */
+    public boolean retainPeerDictionary(ZstdDictionary dictionary) {
+        if (!isValid(dictionary)) {
+            return false;
+        }
+        peerDictionaries.compute(dictionary.getId(), (id, peerDictionary) -> {
+            if (peerDictionary == null) {
+                peerDictionary = new PeerDictionary(new ZstdDictDecompress(dictionary.getContent()));
+            }
+            peerDictionary.references++;
+            return peerDictionary;
+        });
+        return true;
+    }
+
+    /**
+     * the connection that retained the dictionary is closed, the dictionary is removed if no other connection uses it
+     */
+    public void releasePeerDictionary(int id) {
+        peerDictionaries.computeIfPresent(id, (key, peerDictionary) -> --peerDictionary.references > 0 ? peerDictionary : null);
+    }
+
+    private boolean isValid(ZstdDictionary dictionary) {
+        byte[] content = dictionary.getContent();
+        if (content == null || content.length > maxDictionarySize
+                || Zstd.getDictIdFromDict(content) != dictionary.getId() || dictionary.getId() == 0) {
+            log.warn("Invalid zstd dictionary [{}] of [{}], size [{}]", dictionary.getId(), dictionary.getServiceName(),
+                    content == null ? 0 : content.length);
+            return false;
+        }
+        return true;
+    }
+
+    private ZstdDictionary addLocalDictionary(String serviceName, byte[] content) {
+        int id = (int) Zstd.getDictIdFromDict(content);
+        if (id == 0) {
+            // 没有字典 ID 的原始内容字典无法在帧中标识，不使用
+            log.warn("Zstd dictionary of [{}] has no dictionary id, ignored", serviceName);
+            return null;
+        }
+        ZstdDictionary dictionary = new ZstdDictionary(id, serviceName, content);
+        if (!isValid(dictionary)) {
+            return null;
+        }
+        decompressDictionaries.computeIfAbsent(id, key -> new ZstdDictDecompress(content));
+        compressDictionaries.computeIfAbsent(id, key -> new ZstdDictCompress(content, ZstdCompress.COMPRESSION_LEVEL));
+        localDictionaries.put(serviceName, dictionary);
+        return dictionary;
+    }
+
+    private void loadDictionaries() {
+        if (dictionaryDir == null) {
+            return;
+        }
+        Path dir = Paths.get(dictionaryDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + DICTIONARY_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String serviceName = fileName.substring(0, fileName.length() - DICTIONARY_SUFFIX.length());
+                ZstdDictionary dictionary = addLocalDictionary(serviceName, Files.readAllBytes(file));
+                if (dictionary != null) {
+                    log.info("Zstd dictionary [{}] of [{}] loaded from [{}]", dictionary.getId(), serviceName, file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Load zstd dictionaries from [{}] failed", dictionaryDir, e);
+        }
+    }
+
+    private void saveDictionary(ZstdDictionary dictionary) {
+        if (dictionaryDir == null) {
+            return;
+        }
+        Path file = Paths.get(dictionaryDir, dictionary.getServiceName() + DICTIONARY_SUFFIX);
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, dictionary.getContent());
+        } catch (IOException e) {
+            log.warn("Save zstd dictionary of [{}] to [{}] failed", dictionary.getServiceName(), file, e);
+        }
+    }
+
+    /**
+     * 对端的字典和加载它的连接数，只在 peerDictionaries 的 compute 中修改
+     */
+    private static final class PeerDictionary {
+        private final ZstdDictDecompress dictionary;
+        private int references;
+
+        private PeerDictionary(ZstdDictDecompress dictionary) {
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * 某个服务的训练样本，采够 rpc.compress.zstd.dict-samples 个或者总大小达到字典大小的 100 倍后只训练一次
+     */
+    private final class Sampler {
+        private final List<byte[]> samples = new ArrayList<>();
+        private long sampleBytes;
+        private boolean full;
+
+        /**
+         * @return true if this sample fills the sampler
+         */
+        private synchronized boolean add(ByteBuf body) {
+            if (full) {
+                return false;
+            }
+            byte[] sample = ByteBufUtil.getBytes(body, body.readerIndex(), Math.min(body.readableBytes(), MAX_SAMPLE_SIZE));
+            samples.add(sample);
+            sampleBytes += sample.length;
+            full = samples.size() >= sampleCount || sampleBytes >= (long) dictionarySize * SAMPLE_BYTES_PER_DICTIONARY_BYTE;
+            return full;
+        }
+    }
+}
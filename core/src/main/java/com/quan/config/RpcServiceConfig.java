@@ -0,0 +1,56 @@
+package com.quan.config;
+
+import com.quan.enums.DispatchTypeEnum;
+import lombok.*;
+
+/**
+ * Description: 服务发布时的配置
+ * date: 2026/10/18 下午 4:20
+ *
+ * @author Quan
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+@ToString
+public class RpcServiceConfig {
+    /**
+     * service version
+     */
+    @Builder.Default
+    private String version = "";
+    /**
+     * when the interface has multiple implementation classes, distinguish by group
+     */
+    @Builder.Default
+    private String group = "";
+
+    /**
+     * target service
+     */
+    private Object service;
+
+    /**
+     * thread model of the service methods, {@link com.quan.annotation.RpcDispatch} on the service class or a method overrides it
+     */
+    @Builder.Default
+    private DispatchTypeEnum dispatch = DispatchTypeEnum.SHARED;
+    /**
+     * threads of the bulkhead pool, 0 means the number of cpus
+     */
+    private int threads;
+    /**
+     * queue size of the bulkhead pool, 0 means no queue, requests are rejected when all threads are busy
+     */
+    private int queueSize;
+
+    public String getRpcServiceName() {
+        return this.getServiceName() + this.getGroup() + this.getVersion();
+    }
+
+    public String getServiceName() {
+        return this.service.getClass().getInterfaces()[0].getCanonicalName();
+    }
+}
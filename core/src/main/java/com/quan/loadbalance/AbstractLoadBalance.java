@@ -0,0 +1,29 @@
+package com.quan.loadbalance;
+
+import com.quan.remoting.dto.RpcRequest;
+
+import java.util.List;
+
+/**
+ * Description: 地址为空或者只有一个时不需要负载均衡
+ * date: 2026/10/19 上午 12:10
+ *
+ * @author Quan
+ */
+public abstract class AbstractLoadBalance implements LoadBalance {
+    @Override
+    public String selectServiceAddress(List<String> serviceUrlList, RpcRequest rpcRequest) {
+        if (serviceUrlList == null || serviceUrlList.isEmpty()) {
+            return null;
+        }
+        if (serviceUrlList.size() == 1) {
+            return serviceUrlList.get(0);
+        }
+        return doSelect(serviceUrlList, rpcRequest);
+    }
+
+    /**
+     * @param serviceUrlList at least two addresses
+     */
+    protected abstract String doSelect(List<String> serviceUrlList, RpcRequest rpcRequest);
+}
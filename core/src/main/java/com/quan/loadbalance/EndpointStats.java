@@ -0,0 +1,159 @@
+package com.quan.loadbalance;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.metrics.RpcMetrics;
+import com.quan.utils.RpcConfigUtil;
+
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Description: 客户端看到的一个服务地址的状态：未完成的请求数、延迟的 peak EWMA 和权重
+ * <p>
+ * 延迟比平均值高时直接取新值（peak），比平均值低时按时间衰减慢慢回落；没有新样本时平均值也随时间衰减，
+ * 一段时间没有请求的慢地址会重新得到请求，确认是否已经恢复。失败按 1 秒的延迟计算。
+ * 没有在途请求且超过 rpc.client.endpoint-idle-seconds 没有响应的地址被移除，那时平均值早已衰减到 0，移除不丢信息
+ * date: 2026/10/19 上午 12:10
+ *
+ * @author Quan
+ */
+public final class EndpointStats {
+
+    private static final Map<String, EndpointStats> STATS = new ConcurrentHashMap<>();
+
+    /**
+     * EWMA 的衰减时间常数
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * 还没有延迟样本、但已有请求在途的地址，等第一个响应回来再继续发
+     */
+    private static final double PENALTY = Double.MAX_VALUE / 2;
+
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(Math.max(1, RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_ENDPOINT_IDLE, 300)));
+    /**
+     * 上次清理空闲地址的时间，每个空闲周期最多清理一次
+     */
+    private static final AtomicLong LAST_SWEEP = new AtomicLong(System.nanoTime());
+
+    static {
+        RpcMetrics.gauge("loadbalance.endpoints", EndpointStats::toMap);
+    }
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int weight = 1;
+    private double ewmaNanos;
+    private long lastUpdate = System.nanoTime();
+
+    private EndpointStats() {
+    }
+
+    /**
+     * @param address host:port, the same form as the addresses in the registry
+     */
+    public static EndpointStats of(String address) {
+        return STATS.computeIfAbsent(address, key -> new EndpointStats());
+    }
+
+    public static EndpointStats of(InetSocketAddress address) {
+        return of(address.getHostString() + ":" + address.getPort());
+    }
+
+    /**
+     * called when a request is sent to the address, must be followed by one {@link #onComplete(long, boolean)}
+     */
+    public void onStart() {
+        inflight.incrementAndGet();
+        removeIdle();
+    }
+
+    /**
+     * @param rttNanos time from sending the request to receiving the response
+     * @param failed   true if the request failed or timed out
+     */
+    public void onComplete(long rttNanos, boolean failed) {
+        inflight.decrementAndGet();
+        observe(failed ? Math.max(rttNanos, FAILURE_PENALTY_NANOS) : rttNanos);
+    }
+
+    private synchronized void observe(long rttNanos) {
+        long now = System.nanoTime();
+        double w = Math.exp(-(now - lastUpdate) / DECAY_NANOS);
+        lastUpdate = now;
+        ewmaNanos = rttNanos > ewmaNanos ? rttNanos : ewmaNanos * w + rttNanos * (1 - w);
+    }
+
+    /**
+     * @return latency EWMA decayed to now, 0 if there is no sample
+     */
+    public synchronized double latencyNanos() {
+        return ewmaNanos * Math.exp(-(System.nanoTime() - lastUpdate) / DECAY_NANOS);
+    }
+
+    /**
+     * @return expected latency of a new request, the EWMA times the requests in flight including the new one
+     */
+    public double cost() {
+        double latency = latencyNanos();
+        int pending = inflight.get();
+        if (latency == 0 && pending > 0) {
+            return PENALTY;
+        }
+        return latency * (pending + 1);
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param weight weight from the registry, values below 1 are treated as 1
+     */
+    public void setWeight(int weight) {
+        this.weight = Math.max(1, weight);
+    }
+
+    private synchronized boolean isIdle(long now) {
+        return inflight.get() == 0 && now - lastUpdate > IDLE_NANOS;
+    }
+
+    /**
+     * 下线的地址不会一直留在内存和 loadbalance.endpoints 指标中。检查之后刚取到它的请求仍在旧对象上统计，
+     * 只少算这一次，之后的请求使用新对象
+     */
+    private static void removeIdle() {
+        long now = System.nanoTime();
+        long lastSweep = LAST_SWEEP.get();
+        if (now - lastSweep < IDLE_NANOS || !LAST_SWEEP.compareAndSet(lastSweep, now)) {
+            return;
+        }
+        STATS.forEach((address, stats) -> {
+            if (stats.isIdle(now)) {
+                STATS.remove(address, stats);
+            }
+        });
+    }
+
+    private static Map<String, Object> toMap() {
+        Map<String, Object> map = new TreeMap<>();
+        STATS.forEach((address, stats) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("inflight", stats.getInflight());
+            values.put("latencyMicros", (long) stats.latencyNanos() / 1000);
+            values.put("weight", stats.getWeight());
+            map.put(address, values);
+        });
+        return map;
+    }
+}
@@ -0,0 +1,21 @@
+package com.quan.loadbalance;
+
+import com.quan.extension.SPI;
+import com.quan.remoting.dto.RpcRequest;
+
+import java.util.List;
+
+/**
+ * Description: 负载均衡，从服务的所有地址中选一个
+ * date: 2026/10/19 上午 12:10
+ *
+ * @author Quan
+ */
+@SPI
+public interface LoadBalance {
+    /**
+     * @param serviceUrlList addresses of the providers, in the form of host:port
+     * @return the selected address, null if the list is empty
+     */
+    String selectServiceAddress(List<String> serviceUrlList, RpcRequest rpcRequest);
+}
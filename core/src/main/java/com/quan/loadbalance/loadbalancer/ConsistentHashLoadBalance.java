@@ -0,0 +1,162 @@
+package com.quan.loadbalance.loadbalancer;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.loadbalance.AbstractLoadBalance;
+import com.quan.remoting.dto.RpcRequest;
+import com.quan.utils.RpcConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: 一致性哈希（ketama），相同键的请求总是发到同一个地址，服务端按键缓存时命中率更高
+ * <p>
+ * 每个地址在哈希环上有 rpc.loadbalance.hash-nodes 个虚拟节点，增减地址时只有相邻区间的键换地址。
+ * 键为 {@link RpcRequest#getRoutingKey()}，没有设置时为 rpc.loadbalance.hash-argument 指定的参数。
+ * 每个服务的哈希环缓存起来，只有地址列表的内容变化时才重建
+ * date: 2026/10/19 上午 12:40
+ *
+ * @author Quan
+ */
+@Slf4j
+public class ConsistentHashLoadBalance extends AbstractLoadBalance {
+
+    private static final int VIRTUAL_NODES = Math.max(4, RpcConfigUtil.getInt(RpcConfigEnum.LOADBALANCE_HASH_NODES, 160));
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+    private final Map<String, Integer> hashArguments = new ConcurrentHashMap<>();
+
+    @Override
+    protected String doSelect(List<String> serviceUrlList, RpcRequest rpcRequest) {
+        String rpcServiceName = rpcRequest.getRpcServiceName();
+        Ring ring = rings.get(rpcServiceName);
+        if (ring == null || ring.addresses != serviceUrlList) {
+            if (ring != null && ring.isBuiltFrom(serviceUrlList)) {
+                // 内容相同的新列表，复用哈希环，之后按引用比较即可
+                ring = ring.withAddresses(serviceUrlList);
+            } else {
+                ring = new Ring(serviceUrlList);
+                log.info("Hash ring of [{}] rebuilt with [{}] addresses", rpcServiceName, ring.addressSet.size());
+            }
+            rings.put(rpcServiceName, ring);
+        }
+        return ring.select(hash(digest(routingKey(rpcRequest)), 0));
+    }
+
+    private String routingKey(RpcRequest rpcRequest) {
+        if (rpcRequest.getRoutingKey() != null) {
+            return rpcRequest.getRoutingKey();
+        }
+        int index = hashArguments.computeIfAbsent(rpcRequest.getRpcServiceName(),
+                serviceName -> RpcConfigUtil.getInt(RpcConfigEnum.LOADBALANCE_HASH_ARGUMENT, serviceName, 0));
+        Object[] parameters = rpcRequest.getParameters();
+        return parameters != null && index >= 0 && index < parameters.length ? String.valueOf(parameters[index]) : "";
+    }
+
+    private static byte[] digest(String key) {
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        return md5.digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param number which of the four 32-bit hashes in the 16-byte digest
+     */
+    private static long hash(byte[] digest, int number) {
+        return (((long) (digest[3 + number * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + number * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + number * 4] & 0xFF) << 8)
+                | (digest[number * 4] & 0xFF))
+                & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 排好序的虚拟节点哈希值和对应的地址，创建后不再修改
+     */
+    private static final class Ring {
+        private final List<String> addresses;
+        private final Set<String> addressSet;
+        private final long[] hashes;
+        private final String[] nodes;
+
+        Ring(List<String> serviceUrlList) {
+            this.addresses = serviceUrlList;
+            this.addressSet = new HashSet<>(serviceUrlList);
+            // 每个 MD5 摘要产生 4 个虚拟节点
+            int groups = (VIRTUAL_NODES + 3) / 4;
+            long[][] entries = new long[addressSet.size() * groups * 4][];
+            String[] sortedAddresses = addressSet.toArray(new String[0]);
+            // 地址排序后再编号，列表顺序不同时得到相同的环
+            Arrays.sort(sortedAddresses);
+            int n = 0;
+            for (int i = 0; i < sortedAddresses.length; i++) {
+                for (int group = 0; group < groups; group++) {
+                    byte[] digest = digest(sortedAddresses[i] + "-" + group);
+                    for (int number = 0; number < 4; number++) {
+                        entries[n++] = new long[]{hash(digest, number), i};
+                    }
+                }
+            }
+            Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+            this.hashes = new long[n];
+            this.nodes = new String[n];
+            for (int i = 0; i < n; i++) {
+                hashes[i] = entries[i][0];
+                nodes[i] = sortedAddresses[(int) entries[i][1]];
+            }
+        }
+
+        private Ring(List<String> addresses, Ring ring) {
+            this.addresses = addresses;
+            this.addressSet = ring.addressSet;
+            this.hashes = ring.hashes;
+            this.nodes = ring.nodes;
+        }
+
+        /**
+         * @return true if the list has the same addresses as the one the ring is built from, in any order and
+         * ignoring duplicates
+         */
+        boolean isBuiltFrom(List<String> serviceUrlList) {
+            if (serviceUrlList == addresses) {
+                return true;
+            }
+            // 与去重后的地址比较，列表中有重复地址时不会每次都重建
+            return addressSet.containsAll(serviceUrlList) && addressSet.equals(new HashSet<>(serviceUrlList));
+        }
+
+        /**
+         * @return the same ring for another list with the same addresses
+         */
+        Ring withAddresses(List<String> serviceUrlList) {
+            return new Ring(serviceUrlList, this);
+        }
+
+        /**
+         * @return the address of the first virtual node clockwise from the hash
+         */
+        String select(long hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return nodes[index == hashes.length ? 0 : index];
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.quan.loadbalance.loadbalancer;
+
+import com.quan.loadbalance.AbstractLoadBalance;
+import com.quan.loadbalance.EndpointStats;
+import com.quan.remoting.dto.RpcRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Description: power of two choices，随机取两个地址，选 延迟 EWMA × (在途请求数 + 1) 较小的一个
+ * <p>
+ * 比较两个地址就能避开慢的和积压多的地址，又不会像总选最优那样让所有客户端同时涌向同一个地址
+ * date: 2026/10/19 上午 12:10
+ *
+ * @author Quan
+ */
+public class P2cEwmaLoadBalance extends AbstractLoadBalance {
+    @Override
+    protected String doSelect(List<String> serviceUrlList, RpcRequest rpcRequest) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = serviceUrlList.size();
+        int first = random.nextInt(size);
+        // 第二个从其余地址中取，保证两个不同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        String a = serviceUrlList.get(first);
+        String b = serviceUrlList.get(second);
+        return EndpointStats.of(a).cost() <= EndpointStats.of(b).cost() ? a : b;
+    }
+}
@@ -0,0 +1,20 @@
+package com.quan.loadbalance.loadbalancer;
+
+import com.quan.loadbalance.AbstractLoadBalance;
+import com.quan.remoting.dto.RpcRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Description: 随机选择
+ * date: 2026/10/19 上午 12:10
+ *
+ * @author Quan
+ */
+public class RandomLoadBalance extends AbstractLoadBalance {
+    @Override
+    protected String doSelect(List<String> serviceUrlList, RpcRequest rpcRequest) {
+        return serviceUrlList.get(ThreadLocalRandom.current().nextInt(serviceUrlList.size()));
+    }
+}
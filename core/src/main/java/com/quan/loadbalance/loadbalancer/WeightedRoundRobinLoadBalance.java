@@ -0,0 +1,51 @@
+package com.quan.loadbalance.loadbalancer;
+
+import com.quan.loadbalance.AbstractLoadBalance;
+import com.quan.loadbalance.EndpointStats;
+import com.quan.remoting.dto.RpcRequest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: 平滑加权轮询（与 nginx 相同）
+ * <p>
+ * 每次选择时每个地址的 current 加上自己的权重，选 current 最大的，再把它减去总权重；
+ * 权重 5:1:1 的选择顺序是 a a b a c a a，而不是连续 5 次 a。权重来自注册中心（{@link EndpointStats#getWeight()}），默认为 1
+ * date: 2026/10/19 上午 12:10
+ *
+ * @author Quan
+ */
+public class WeightedRoundRobinLoadBalance extends AbstractLoadBalance {
+
+    /**
+     * 服务名 -> 地址 -> current
+     */
+    private final Map<String, Map<String, Integer>> services = new ConcurrentHashMap<>();
+
+    @Override
+    protected String doSelect(List<String> serviceUrlList, RpcRequest rpcRequest) {
+        Map<String, Integer> currents = services.computeIfAbsent(rpcRequest.getRpcServiceName(), name -> new HashMap<>());
+        synchronized (currents) {
+            // 下线的地址不再保留
+            currents.keySet().retainAll(serviceUrlList);
+            String selected = null;
+            int selectedCurrent = Integer.MIN_VALUE;
+            int totalWeight = 0;
+            for (String address : serviceUrlList) {
+                int weight = EndpointStats.of(address).getWeight();
+                int current = currents.getOrDefault(address, 0) + weight;
+                currents.put(address, current);
+                totalWeight += weight;
+                if (current > selectedCurrent) {
+                    selected = address;
+                    selectedCurrent = current;
+                }
+            }
+            currents.put(selected, selectedCurrent - totalWeight);
+            return selected;
+        }
+    }
+}
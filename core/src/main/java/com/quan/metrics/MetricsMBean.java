@@ -0,0 +1,68 @@
+package com.quan.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.Map;
+
+/**
+ * Description: 把 {@link RpcMetrics} 中的每个指标暴露为一个只读的 JMX 属性，属性列表随指标注册动态变化
+ * date: 2026/10/18 下午 6:50
+ *
+ * @author Quan
+ */
+class MetricsMBean implements DynamicMBean {
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Map<String, Object> snapshot = RpcMetrics.snapshot();
+        if (!snapshot.containsKey(attribute)) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return String.valueOf(snapshot.get(attribute));
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("metrics are read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> snapshot = RpcMetrics.snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (snapshot.containsKey(attribute)) {
+                list.add(new Attribute(attribute, String.valueOf(snapshot.get(attribute))));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Object> snapshot = RpcMetrics.snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int i = 0;
+        for (String name : snapshot.keySet()) {
+            attributes[i++] = new MBeanAttributeInfo(name, String.class.getName(), name, true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "rpc framework metrics", attributes,
+                null, new MBeanOperationInfo[0], null);
+    }
+}
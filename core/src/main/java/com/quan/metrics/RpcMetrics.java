@@ -0,0 +1,89 @@
+package com.quan.metrics;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Description: 框架内部的运行指标，计数器和 gauge 都按名字注册
+ * <p>
+ * 通过 JMX（com.quan.rpc:type=Metrics）查看，或者配置 rpc.metrics.log-interval 定期打印到日志，
+ * 也可以调用 {@link #snapshot()} 接入其他监控系统
+ * date: 2026/10/18 下午 6:50
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class RpcMetrics {
+
+    private static final String OBJECT_NAME = "com.quan.rpc:type=Metrics";
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<?>> GAUGES = new ConcurrentHashMap<>();
+
+    static {
+        registerMBean();
+        scheduleLogging();
+    }
+
+    private RpcMetrics() {
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * register a value computed on read, an existing gauge with the same name is replaced
+     */
+    public static void gauge(String name, Supplier<?> supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * remove the gauge if it is still the given supplier, a gauge registered again under the same name is kept
+     */
+    public static void removeGauge(String name, Supplier<?> supplier) {
+        GAUGES.remove(name, supplier);
+    }
+
+    /**
+     * @return current value of every counter and gauge, sorted by name
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        GAUGES.forEach((name, gauge) -> snapshot.put(name, gauge.get()));
+        return snapshot;
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.warn("Register metrics MBean [{}] failed: {}", OBJECT_NAME, e.getMessage());
+        }
+    }
+
+    private static void scheduleLogging() {
+        long interval = RpcConfigUtil.getLong(RpcConfigEnum.METRICS_LOG_INTERVAL, 0);
+        if (interval <= 0) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("rpc-metrics-logger", true));
+        executor.scheduleAtFixedRate(() -> log.info("rpc metrics: {}", snapshot()), interval, interval, TimeUnit.SECONDS);
+    }
+}
@@ -5,13 +5,19 @@ import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.quan.enums.RpcConfigEnum;
 import com.quan.enums.RpcErrorMessageEnum;
 import com.quan.exception.RpcException;
+import com.quan.extension.ExtensionLoader;
+import com.quan.loadbalance.EndpointStats;
+import com.quan.loadbalance.LoadBalance;
 import com.quan.registry.ServiceDiscovery;
 import com.quan.remoting.dto.RpcRequest;
+import com.quan.utils.RpcConfigUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,15 +43,37 @@ public class NacosServiceDiscoveryImpl implements ServiceDiscovery {
         }
     }
 
+    private final LoadBalance loadBalance;
+
+    public NacosServiceDiscoveryImpl() {
+        this.loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(
+                RpcConfigUtil.getString(RpcConfigEnum.LOADBALANCE, "p2c"));
+    }
+
     @Override
     public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        String rpcServiceName = rpcRequest.getRpcServiceName();
+        List<Instance> instances;
         try {
-            List<Instance> instances = namingService.getAllInstances(rpcRequest.getRpcServiceName());
-            Instance instance = instances.get(0);
-            return new InetSocketAddress(instance.getIp(), instance.getPort());
+            // 只取健康的实例
+            instances = namingService.selectInstances(rpcServiceName, true);
         } catch (NacosException e) {
             log.error("获取服务时有错误发生:", e);
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
+        }
+        if (instances == null || instances.isEmpty()) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
+        }
+        List<String> serviceUrlList = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            String address = instance.getIp() + ":" + instance.getPort();
+            // 加权轮询使用注册中心中的实例权重
+            EndpointStats.of(address).setWeight((int) Math.round(instance.getWeight()));
+            serviceUrlList.add(address);
         }
-        return null;
+        String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, rpcRequest);
+        log.info("Successfully found the service address:[{}]", targetServiceUrl);
+        int index = targetServiceUrl.lastIndexOf(':');
+        return new InetSocketAddress(targetServiceUrl.substring(0, index), Integer.parseInt(targetServiceUrl.substring(index + 1)));
     }
 }
@@ -1,16 +1,17 @@
 package com.quan.registry.zk;
 
+import com.quan.enums.RpcConfigEnum;
 import com.quan.enums.RpcErrorMessageEnum;
 import com.quan.exception.RpcException;
 import com.quan.extension.ExtensionLoader;
+import com.quan.loadbalance.LoadBalance;
 import com.quan.registry.ServiceDiscovery;
 import com.quan.registry.zk.util.CuratorUtils;
 import com.quan.remoting.dto.RpcRequest;
+import com.quan.utils.RpcConfigUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.curator.framework.CuratorFramework;
 
 import java.net.InetSocketAddress;
-import java.util.List;
 
 /**
  * service discovery based on zookeeper
@@ -23,23 +24,21 @@ public class ZkServiceDiscoveryImpl implements ServiceDiscovery {
     private final LoadBalance loadBalance;
 
     public ZkServiceDiscoveryImpl() {
-        this.loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension("loadBalance");
+        this.loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(
+                RpcConfigUtil.getString(RpcConfigEnum.LOADBALANCE, "p2c"));
     }
 
     @Override
     public InetSocketAddress lookupService(RpcRequest rpcRequest) {
         String rpcServiceName = rpcRequest.getRpcServiceName();
-        CuratorFramework zkClient = CuratorUtils.getZkClient();
-        List<String> serviceUrlList = CuratorUtils.getChildrenNodes(zkClient, rpcServiceName);
-        if (CollectionUtil.isEmpty(serviceUrlList)) {
+        // 地址由 zookeeper 的子节点事件增量更新，这里只读一次 volatile 引用
+        ServiceAddresses serviceAddresses = CuratorUtils.getServiceAddresses(CuratorUtils.getZkClient(), rpcServiceName);
+        if (serviceAddresses.isEmpty()) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
         }
         // load balancing
-        String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, rpcRequest);
-        log.info("Successfully found the service address:[{}]", targetServiceUrl);
-        String[] socketAddressArray = targetServiceUrl.split(":");
-        String host = socketAddressArray[0];
-        int port = Integer.parseInt(socketAddressArray[1]);
-        return new InetSocketAddress(host, port);
+        String targetServiceUrl = loadBalance.selectServiceAddress(serviceAddresses.getServiceUrlList(), rpcRequest);
+        log.debug("Successfully found the service address:[{}]", targetServiceUrl);
+        return serviceAddresses.get(targetServiceUrl);
     }
 }
@@ -1,23 +1,26 @@
 package com.quan.registry.zk.util;
 
-import github.javaguide.enums.RpcConfigEnum;
-import github.javaguide.utils.PropertiesFileUtil;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.registry.zk.ServiceAddresses;
+import com.quan.utils.RpcConfigUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
 
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,9 +35,11 @@ public final class CuratorUtils {
     private static final int BASE_SLEEP_TIME = 1000;
     private static final int MAX_RETRIES = 3;
     public static final String ZK_REGISTER_ROOT_PATH = "/my-rpc";
-    private static final Map<String, List<String>> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>();
+    // 等待第一次拉取服务地址的最长时间
+    private static final int WATCH_TIMEOUT_SECONDS = 5;
+    private static final Map<String, ServiceWatcher> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>();
     private static final Set<String> REGISTERED_PATH_SET = ConcurrentHashMap.newKeySet();
-    private static CuratorFramework zkClient;
+    private static volatile CuratorFramework zkClient;
     private static final String DEFAULT_ZOOKEEPER_ADDRESS = "127.0.0.1:2181";
 
     private CuratorUtils() {
@@ -67,19 +72,21 @@ public final class CuratorUtils {
      * @return All child nodes under the specified node
      */
     public static List<String> getChildrenNodes(CuratorFramework zkClient, String rpcServiceName) {
-        if (SERVICE_ADDRESS_MAP.containsKey(rpcServiceName)) {
-            return SERVICE_ADDRESS_MAP.get(rpcServiceName);
-        }
-        List<String> result = null;
-        String servicePath = ZK_REGISTER_ROOT_PATH + "/" + rpcServiceName;
-        try {
-            result = zkClient.getChildren().forPath(servicePath);
-            SERVICE_ADDRESS_MAP.put(rpcServiceName, result);
-            registerWatcher(rpcServiceName, zkClient);
-        } catch (Exception e) {
-            log.error("get children nodes for path [{}] fail", servicePath);
+        return getServiceAddresses(zkClient, rpcServiceName).getServiceUrlList();
+    }
+
+    /**
+     * Gets the addresses of a service, kept up to date by a watcher on the service node
+     *
+     * @param rpcServiceName rpc service name eg:github.javaguide.HelloServicetest2version1
+     * @return the current addresses, {@link ServiceAddresses#EMPTY} if there is none or the watcher failed to start
+     */
+    public static ServiceAddresses getServiceAddresses(CuratorFramework zkClient, String rpcServiceName) {
+        ServiceWatcher serviceWatcher = SERVICE_ADDRESS_MAP.get(rpcServiceName);
+        if (serviceWatcher == null) {
+            serviceWatcher = registerWatcher(rpcServiceName, zkClient);
         }
-        return result;
+        return serviceWatcher.await();
     }
 
     /**
@@ -99,30 +106,38 @@ public final class CuratorUtils {
     }
 
     public static CuratorFramework getZkClient() {
-        // check if user has set zk address
-        Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
-        String zookeeperAddress = properties != null && properties.getProperty(RpcConfigEnum.ZK_ADDRESS.getPropertyValue()) != null ? properties.getProperty(RpcConfigEnum.ZK_ADDRESS.getPropertyValue()) : DEFAULT_ZOOKEEPER_ADDRESS;
         // if zkClient has been started, return directly
+        CuratorFramework client = zkClient;
+        if (client != null && client.getState() == CuratorFrameworkState.STARTED) {
+            return client;
+        }
+        return createZkClient();
+    }
+
+    private static synchronized CuratorFramework createZkClient() {
         if (zkClient != null && zkClient.getState() == CuratorFrameworkState.STARTED) {
             return zkClient;
         }
+        // check if user has set zk address
+        String zookeeperAddress = RpcConfigUtil.getString(RpcConfigEnum.ZK_ADDRESS, DEFAULT_ZOOKEEPER_ADDRESS);
         // Retry strategy. Retry 3 times, and will increase the sleep time between retries.
         RetryPolicy retryPolicy = new ExponentialBackoffRetry(BASE_SLEEP_TIME, MAX_RETRIES);
-        zkClient = CuratorFrameworkFactory.builder()
+        CuratorFramework client = CuratorFrameworkFactory.builder()
                 // the server to connect to (can be a server list)
                 .connectString(zookeeperAddress)
                 .retryPolicy(retryPolicy)
                 .build();
-        zkClient.start();
+        client.start();
         try {
             // wait 30s until connect to the zookeeper
-            if (!zkClient.blockUntilConnected(30, TimeUnit.SECONDS)) {
+            if (!client.blockUntilConnected(30, TimeUnit.SECONDS)) {
                 throw new RuntimeException("Time out waiting to connect to ZK!");
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        return zkClient;
+        zkClient = client;
+        return client;
     }
 
     /**
@@ -130,15 +145,73 @@ public final class CuratorUtils {
      *
      * @param rpcServiceName rpc service name eg:github.javaguide.HelloServicetest2version
      */
-    private static void registerWatcher(String rpcServiceName, CuratorFramework zkClient) throws Exception {
+    private static synchronized ServiceWatcher registerWatcher(String rpcServiceName, CuratorFramework zkClient) {
+        ServiceWatcher serviceWatcher = SERVICE_ADDRESS_MAP.get(rpcServiceName);
+        if (serviceWatcher != null) {
+            return serviceWatcher;
+        }
+        serviceWatcher = new ServiceWatcher(rpcServiceName);
         String servicePath = ZK_REGISTER_ROOT_PATH + "/" + rpcServiceName;
-        PathChildrenCache pathChildrenCache = new PathChildrenCache(zkClient, servicePath, true);
-        PathChildrenCacheListener pathChildrenCacheListener = (curatorFramework, pathChildrenCacheEvent) -> {
-            List<String> serviceAddresses = curatorFramework.getChildren().forPath(servicePath);
-            SERVICE_ADDRESS_MAP.put(rpcServiceName, serviceAddresses);
-        };
-        pathChildrenCache.getListenable().addListener(pathChildrenCacheListener);
-        pathChildrenCache.start();
+        // 不缓存节点数据，只需要子节点名 host:port
+        PathChildrenCache pathChildrenCache = new PathChildrenCache(zkClient, servicePath, false);
+        pathChildrenCache.getListenable().addListener(serviceWatcher);
+        try {
+            // 已有的子节点也以 CHILD_ADDED 事件通知，之后是 INITIALIZED，地址列表只由事件增量更新
+            pathChildrenCache.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
+        } catch (Exception e) {
+            log.error("watch children nodes for path [{}] fail", servicePath, e);
+            serviceWatcher.initialized.countDown();
+            return serviceWatcher;
+        }
+        SERVICE_ADDRESS_MAP.put(rpcServiceName, serviceWatcher);
+        return serviceWatcher;
+    }
+
+    /**
+     * 一个服务的地址，PathChildrenCache 在同一个线程中按顺序回调，只有这个线程写 addresses
+     */
+    private static final class ServiceWatcher implements PathChildrenCacheListener {
+        private final String rpcServiceName;
+        private final CountDownLatch initialized = new CountDownLatch(1);
+        private volatile ServiceAddresses addresses = ServiceAddresses.EMPTY;
+
+        ServiceWatcher(String rpcServiceName) {
+            this.rpcServiceName = rpcServiceName;
+        }
+
+        @Override
+        public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) {
+            switch (event.getType()) {
+                case CHILD_ADDED:
+                    addresses = addresses.add(ZKPaths.getNodeFromPath(event.getData().getPath()));
+                    break;
+                case CHILD_REMOVED:
+                    addresses = addresses.remove(ZKPaths.getNodeFromPath(event.getData().getPath()));
+                    break;
+                case INITIALIZED:
+                    initialized.countDown();
+                    break;
+                default:
+                    return;
+            }
+            log.info("Addresses of service [{}] changed to {}", rpcServiceName, addresses);
+        }
+
+        /**
+         * @return the addresses, waiting for the initial children the first time
+         */
+        ServiceAddresses await() {
+            if (initialized.getCount() > 0) {
+                try {
+                    if (!initialized.await(WATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        log.warn("Time out waiting for addresses of service [{}]", rpcServiceName);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return addresses;
+        }
     }
 
 }
@@ -24,6 +24,12 @@ public class RpcConstants {
     public static final byte HEARTBEAT_REQUEST_TYPE = 3;
     //pong
     public static final byte HEARTBEAT_RESPONSE_TYPE = 4;
+    //zstd dictionary offered to the peer
+    public static final byte DICTIONARY_TYPE = 5;
+    //the peer has loaded the zstd dictionary
+    public static final byte DICTIONARY_ACK_TYPE = 6;
+    //several complete frames packed into one frame
+    public static final byte BATCH_TYPE = 7;
     public static final int HEAD_LENGTH = 16;
     public static final String PING = "ping";
     public static final String PONG = "pong";
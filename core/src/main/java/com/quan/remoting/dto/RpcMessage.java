@@ -31,5 +31,13 @@ public class RpcMessage {
      * request data
      */
     private Object data;
+    /**
+     * rpc service name of the data, used to pick the compress dictionary, not written to the wire
+     */
+    private String serviceName;
+    /**
+     * method name of the data, used to collect per method compress statistics, not written to the wire
+     */
+    private String methodName;
 
 }
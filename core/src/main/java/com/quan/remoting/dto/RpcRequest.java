@@ -12,7 +12,14 @@ import java.io.Serializable;
 @ToString
 public class RpcRequest implements Serializable {
     private static final long serialVersionUID = 1905122041950251207L;
-    private String requestId;
+    /**
+     * caller side id, not serialized, requests and responses are matched by the id in the message header
+     */
+    private transient String requestId;
+    /**
+     * key of consistent hash load balancing, not serialized; null means hashing the configured argument
+     */
+    private transient String routingKey;
     private String interfaceName;
     private String methodName;
     private Object[] parameters;
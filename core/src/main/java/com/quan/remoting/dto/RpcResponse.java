@@ -15,7 +15,10 @@ import java.io.Serializable;
 public class RpcResponse<T> implements Serializable {
 
     private static final long serialVersionUID = 715745410605631233L;
-    private String requestId;
+    /**
+     * caller side id, not serialized, requests and responses are matched by the id in the message header
+     */
+    private transient String requestId;
     /**
      * response code
      */
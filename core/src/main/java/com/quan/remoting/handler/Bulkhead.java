@@ -0,0 +1,64 @@
+package com.quan.remoting.handler;
+
+import com.quan.metrics.RpcMetrics;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description: 服务或方法独占的有界线程池
+ * <p>
+ * 线程数和队列长度都有上限，队列满时 {@link #execute(Runnable)} 抛出 {@link RejectedExecutionException}，
+ * 由调用方返回拒绝响应，不会无限堆积请求
+ * date: 2026/10/18 下午 10:40
+ *
+ * @author Quan
+ */
+public final class Bulkhead implements Executor {
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected;
+
+    /**
+     * @param name      service name, or service name and method name of a method bulkhead
+     * @param threads   0 means the number of cpus
+     * @param queueSize 0 means no queue
+     */
+    public Bulkhead(String name, int threads, int queueSize) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, queue,
+                new DefaultThreadFactory("rpc-bulkhead-" + name, true), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.rejected = RpcMetrics.counter("server.bulkhead." + name + ".rejected");
+        RpcMetrics.gauge("server.bulkhead." + name, this::toMap);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("threads", executor.getMaximumPoolSize());
+        map.put("active", executor.getActiveCount());
+        map.put("queued", executor.getQueue().size());
+        map.put("completed", executor.getCompletedTaskCount());
+        return map;
+    }
+}
@@ -0,0 +1,148 @@
+package com.quan.remoting.handler;
+
+import com.quan.annotation.RpcDispatch;
+import com.quan.config.RpcServiceConfig;
+import com.quan.enums.DispatchTypeEnum;
+import com.quan.enums.RpcErrorMessageEnum;
+import com.quan.exception.RpcException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: 服务方法表，服务名 -> 方法名 -> 方法
+ * <p>
+ * 发布服务时为服务接口的所有方法创建 {@link MethodInvoker}，处理请求时只查两次 map，
+ * 再按参数类型在同名的重载方法中选一个。创建时同时确定每个方法的线程模型（{@link DispatchTypeEnum}）
+ * date: 2026/10/18 下午 9:40
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class MethodInvokers {
+
+    private static final MethodInvokers INSTANCE = new MethodInvokers();
+
+    private final Map<String, Map<String, MethodInvoker[]>> services = new ConcurrentHashMap<>();
+
+    private MethodInvokers() {
+    }
+
+    public static MethodInvokers getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * create the invokers of all methods of the service interfaces, called when the service is published
+     */
+    public void register(RpcServiceConfig rpcServiceConfig) {
+        register(rpcServiceConfig.getRpcServiceName(), rpcServiceConfig.getService(), rpcServiceConfig.getDispatch(),
+                rpcServiceConfig.getThreads(), rpcServiceConfig.getQueueSize());
+    }
+
+    /**
+     * register a service published without {@link RpcServiceConfig}, only {@link RpcDispatch} decides the thread model
+     */
+    public void register(String rpcServiceName, Object service) {
+        register(rpcServiceName, service, DispatchTypeEnum.SHARED, 0, 0);
+    }
+
+    private void register(String rpcServiceName, Object service, DispatchTypeEnum dispatch, int threads, int queueSize) {
+        if (service == null) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
+        }
+        Class<?> serviceClass = service.getClass();
+        // 类上的注解覆盖 RpcServiceConfig 中的配置
+        RpcDispatch classDispatch = findAnnotation(serviceClass);
+        if (classDispatch != null) {
+            dispatch = classDispatch.value();
+            threads = classDispatch.threads();
+            queueSize = classDispatch.queueSize();
+        }
+        if (dispatch == null) {
+            dispatch = DispatchTypeEnum.SHARED;
+        }
+        Bulkhead serviceBulkhead = null;
+        Map<String, List<MethodInvoker>> methods = new HashMap<>();
+        for (Class<?> serviceInterface : serviceClass.getInterfaces()) {
+            for (Method method : serviceInterface.getMethods()) {
+                RpcDispatch methodDispatch = findAnnotation(serviceClass, method);
+                MethodInvoker invoker;
+                if (methodDispatch != null) {
+                    // 方法上的 BULKHEAD 使用方法独占的线程池
+                    Bulkhead bulkhead = methodDispatch.value() == DispatchTypeEnum.BULKHEAD
+                            ? new Bulkhead(rpcServiceName + "#" + method.getName(), methodDispatch.threads(), methodDispatch.queueSize())
+                            : null;
+                    invoker = MethodInvoker.of(service, method, methodDispatch.value(), bulkhead);
+                } else {
+                    if (dispatch == DispatchTypeEnum.BULKHEAD && serviceBulkhead == null) {
+                        serviceBulkhead = new Bulkhead(rpcServiceName, threads, queueSize);
+                    }
+                    invoker = MethodInvoker.of(service, method, dispatch, dispatch == DispatchTypeEnum.BULKHEAD ? serviceBulkhead : null);
+                }
+                methods.computeIfAbsent(method.getName(), name -> new ArrayList<>()).add(invoker);
+            }
+        }
+        Map<String, MethodInvoker[]> invokers = new HashMap<>();
+        methods.forEach((name, list) -> invokers.put(name, list.toArray(new MethodInvoker[0])));
+        services.put(rpcServiceName, invokers);
+        log.info("Service [{}] published with [{}] methods, dispatch [{}]", rpcServiceName, invokers.size(), dispatch.getName());
+    }
+
+    /**
+     * @return the annotation on the service class or one of its interfaces
+     */
+    private static RpcDispatch findAnnotation(Class<?> serviceClass) {
+        RpcDispatch rpcDispatch = serviceClass.getAnnotation(RpcDispatch.class);
+        if (rpcDispatch != null) {
+            return rpcDispatch;
+        }
+        for (Class<?> serviceInterface : serviceClass.getInterfaces()) {
+            rpcDispatch = serviceInterface.getAnnotation(RpcDispatch.class);
+            if (rpcDispatch != null) {
+                return rpcDispatch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the annotation on the implementation of the method, or on the interface method
+     */
+    private static RpcDispatch findAnnotation(Class<?> serviceClass, Method method) {
+        try {
+            RpcDispatch rpcDispatch = serviceClass.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(RpcDispatch.class);
+            if (rpcDispatch != null) {
+                return rpcDispatch;
+            }
+        } catch (NoSuchMethodException e) {
+            // 接口方法一定有实现，不会走到这里
+        }
+        return method.getAnnotation(RpcDispatch.class);
+    }
+
+    /**
+     * @return the invoker of the method, null if the service is not registered
+     * @throws RpcException if the service has no method of the name and parameter types
+     */
+    public MethodInvoker get(String rpcServiceName, String methodName, Class<?>[] paramTypes) {
+        Map<String, MethodInvoker[]> invokers = services.get(rpcServiceName);
+        if (invokers == null) {
+            return null;
+        }
+        MethodInvoker[] overloads = invokers.get(methodName);
+        if (overloads != null) {
+            for (MethodInvoker invoker : overloads) {
+                if (invoker.matches(paramTypes)) {
+                    return invoker;
+                }
+            }
+        }
+        throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "no method " + methodName + " in " + rpcServiceName);
+    }
+}
@@ -1,12 +1,8 @@
 package com.quan.remoting.handler;
 
-import com.quan.exception.RpcException;
 import com.quan.remoting.dto.RpcRequest;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 /**
  * Description: 处理RPC请求
  * date: 2023/02/23 下午 7:01
@@ -18,30 +14,41 @@ public class RpcRequestHandler {
 
     private final ServiceProvider serviceProvider;
 
+    private final MethodInvokers methodInvokers;
+
     public RpcRequestHandler() {
         serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        methodInvokers = MethodInvokers.getInstance();
     }
 
     /**
      * Processing rpcRequest: call the corresponding method, and then return the method
      */
     public Object handle(RpcRequest rpcRequest) {
-        Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
-        return invokeTargetMethod(rpcRequest, service);
+        return handle(getInvoker(rpcRequest), rpcRequest);
     }
 
-    // 调用对应的方法，处理RPC请求
-    private Object invokeTargetMethod(RpcRequest rpcRequest, Object service) {
-        Object result;
-        try {
-            // 通过反射构建方法
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
-            log.info("Service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
-            throw new RpcException(e.getMessage(), e);
-        }
-
+    /**
+     * @param invoker the invoker returned by {@link #getInvoker(RpcRequest)}
+     */
+    public Object handle(MethodInvoker invoker, RpcRequest rpcRequest) {
+        Object result = invoker.invoke(rpcRequest.getParameters());
+        log.info("Service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
         return result;
     }
+
+    /**
+     * @return the invoker of the requested method, it also tells which thread the method should run on
+     */
+    public MethodInvoker getInvoker(RpcRequest rpcRequest) {
+        // 方法表在发布服务时创建，这里只是查表
+        MethodInvoker invoker = methodInvokers.get(rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        if (invoker == null) {
+            // 没有经过 NettyRpcServer.registerService 发布的服务，第一次调用时创建方法表
+            Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
+            methodInvokers.register(rpcRequest.getRpcServiceName(), service);
+            invoker = methodInvokers.get(rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+        }
+        return invoker;
+    }
 }
@@ -17,4 +17,15 @@ public interface RpcRequestTransport {
      * @return data from server
      */
     Object sendRpcRequest(RpcRequest rpcRequest);
+
+    /**
+     * send rpc request to server with a timeout of this call only
+     *
+     * @param rpcRequest    message body
+     * @param timeoutMillis the call fails if no response arrives in time, 0 means no timeout
+     * @return data from server
+     */
+    default Object sendRpcRequest(RpcRequest rpcRequest, long timeoutMillis) {
+        return sendRpcRequest(rpcRequest);
+    }
 }
@@ -0,0 +1,124 @@
+package com.quan.remoting.transport.netty;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Description: 选择 Netty 传输层实现
+ * <p>
+ * Linux 上有 netty-transport-native-epoll 的 native 库时使用 epoll，否则（其他系统、缺少 native 库、
+ * rpc.transport.epoll=false）退回 NIO。epoll 减少了 JDK Selector 的对象分配和系统调用，
+ * 并且支持 TCP_QUICKACK、busy-poll 等 NIO 没有的选项
+ * date: 2026/10/18 下午 9:10
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class TransportUtils {
+
+    private static final boolean EPOLL = useEpoll();
+    private static final boolean EDGE_TRIGGERED = RpcConfigUtil.getBoolean(RpcConfigEnum.TRANSPORT_EPOLL_EDGE_TRIGGERED, true);
+    private static final boolean TCP_QUICKACK = RpcConfigUtil.getBoolean(RpcConfigEnum.TRANSPORT_EPOLL_TCP_QUICKACK, false);
+    private static final int BUSY_POLL_MICROS = RpcConfigUtil.getInt(RpcConfigEnum.TRANSPORT_EPOLL_BUSY_POLL, 0);
+
+    private TransportUtils() {
+    }
+
+    /**
+     * @return true if the native epoll transport is used
+     */
+    public static boolean isEpoll() {
+        return EPOLL;
+    }
+
+    /**
+     * @param threads 0 means the netty default, twice the number of cpus
+     */
+    public static EventLoopGroup eventLoopGroup(int threads) {
+        return EPOLL ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+
+    public static Class<? extends SocketChannel> socketChannelClass() {
+        return EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    public static Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+        return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * set the epoll specific options of client channels, nothing to do with nio
+     */
+    public static void applyOptions(Bootstrap bootstrap) {
+        if (!EPOLL) {
+            return;
+        }
+        bootstrap.option(EpollChannelOption.EPOLL_MODE, EDGE_TRIGGERED ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+        bootstrap.option(EpollChannelOption.TCP_QUICKACK, TCP_QUICKACK);
+        if (BUSY_POLL_MICROS > 0) {
+            bootstrap.option(EpollChannelOption.SO_BUSY_POLL, BUSY_POLL_MICROS);
+        }
+    }
+
+    /**
+     * set the epoll specific options of the server channel and accepted channels, nothing to do with nio
+     */
+    public static void applyOptions(ServerBootstrap serverBootstrap) {
+        if (!EPOLL) {
+            return;
+        }
+        EpollMode epollMode = EDGE_TRIGGERED ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+        serverBootstrap.option(EpollChannelOption.EPOLL_MODE, epollMode);
+        serverBootstrap.childOption(EpollChannelOption.EPOLL_MODE, epollMode);
+        serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, TCP_QUICKACK);
+        if (BUSY_POLL_MICROS > 0) {
+            serverBootstrap.childOption(EpollChannelOption.SO_BUSY_POLL, BUSY_POLL_MICROS);
+        }
+    }
+
+    /**
+     * enable SO_REUSEPORT so that several server channels can bind the same port, only supported by epoll
+     *
+     * @return false if the option is not supported and the port can be bound only once
+     */
+    public static boolean applyReusePort(ServerBootstrap serverBootstrap) {
+        if (!EPOLL) {
+            return false;
+        }
+        serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        return true;
+    }
+
+    private static boolean useEpoll() {
+        if (!RpcConfigUtil.getBoolean(RpcConfigEnum.TRANSPORT_EPOLL, true)) {
+            log.info("Use nio transport, epoll is disabled");
+            return false;
+        }
+        // 缺少 native 库时 Epoll 类本身可以加载，isAvailable 返回 false；缺少 epoll 的类时会抛出 LinkageError
+        try {
+            if (Epoll.isAvailable()) {
+                log.info("Use native epoll transport");
+                return true;
+            }
+            log.info("Use nio transport, epoll is not available: {}", String.valueOf(Epoll.unavailabilityCause()));
+        } catch (LinkageError e) {
+            log.info("Use nio transport, epoll is not available: {}", e.toString());
+        }
+        return false;
+    }
+}
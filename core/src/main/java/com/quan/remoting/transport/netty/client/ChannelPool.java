@@ -0,0 +1,91 @@
+package com.quan.remoting.transport.netty.client;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Description: 同一个服务地址的多条连接，请求分散到不同的连接和 event loop 上
+ * date: 2026/10/18 下午 8:10
+ *
+ * @author Quan
+ */
+class ChannelPool {
+
+    private final AtomicReferenceArray<Channel> channels;
+
+    ChannelPool(int size) {
+        this.channels = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * @return the writable channel with the fewest pending requests, a non writable one if all of them are busy,
+     * null if there is no active channel
+     */
+    Channel select() {
+        Channel selected = null;
+        int selectedPending = Integer.MAX_VALUE;
+        boolean selectedWritable = false;
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.get(i);
+            if (channel == null || !channel.isActive()) {
+                continue;
+            }
+            boolean writable = channel.isWritable();
+            int pending = UnprocessedRequests.of(channel).size();
+            if (selected == null || (writable && !selectedWritable)
+                    || (writable == selectedWritable && pending < selectedPending)) {
+                selected = channel;
+                selectedPending = pending;
+                selectedWritable = writable;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return true if the pool is not full of active channels and a new connection should be created
+     */
+    boolean hasVacancy() {
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.get(i);
+            if (channel == null || !channel.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the pool is already full of active channels
+     */
+    synchronized boolean add(Channel channel) {
+        for (int i = 0; i < channels.length(); i++) {
+            Channel existing = channels.get(i);
+            if (existing == null || !existing.isActive()) {
+                channels.set(i, channel);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void remove(Channel channel) {
+        for (int i = 0; i < channels.length(); i++) {
+            channels.compareAndSet(i, channel, null);
+        }
+    }
+
+    /**
+     * @return true if no channel is left in the pool, closed channels are removed by the close listener
+     */
+    boolean isEmpty() {
+        for (int i = 0; i < channels.length(); i++) {
+            if (channels.get(i) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
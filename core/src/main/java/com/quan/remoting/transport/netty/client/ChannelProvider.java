@@ -1,16 +1,20 @@
 package com.quan.remoting.transport.netty.client;
 
+import com.quan.enums.RpcConfigEnum;
+import com.quan.utils.RpcConfigUtil;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelPipeline;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Description: channel中介者模式
+ * <p>
+ * 每个服务地址维护 rpc.client.connections 条连接，按未完成请求数最少、优先可写的原则选择连接。
+ * 直接以 InetSocketAddress 作为 key，不再每次查找都 toString()
  * date: 2023/02/23 下午 4:40
  *
  * @author Quan
@@ -19,35 +23,55 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ChannelProvider {
 
-    private final Map<String, Channel> channelMap;
+    private final int connectionsPerAddress = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_CONNECTIONS, 1));
+
+    private final Map<InetSocketAddress, ChannelPool> channelMap;
 
     public ChannelProvider() {
         channelMap = new ConcurrentHashMap<>();
     }
 
+    /**
+     * @return the least loaded active channel of the address, null if there is none
+     */
     public Channel get(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            // 需要判断当前channel连接是否正常！
-            if (channel != null && channel.isActive()) {
-                return channel;
-            } else {
-                channelMap.remove(key);
-            }
-        }
+        ChannelPool pool = channelMap.get(inetSocketAddress);
+        // 需要判断当前channel连接是否正常！select 只返回 active 的连接
+        return pool == null ? null : pool.select();
+    }
 
-        return null;
+    /**
+     * @return true if the address has fewer active channels than configured and a new one should be connected
+     */
+    public boolean hasVacancy(InetSocketAddress inetSocketAddress) {
+        ChannelPool pool = channelMap.get(inetSocketAddress);
+        return pool == null || pool.hasVacancy();
     }
 
-    public void set(InetSocketAddress inetSocketAddress, Channel channel) {
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+    /**
+     * @return false if the address already has enough active channels, the caller should close the channel
+     */
+    public boolean set(InetSocketAddress inetSocketAddress, Channel channel) {
+        AtomicBoolean added = new AtomicBoolean();
+        // 加入和移除都在 channelMap 的同一个 key 上加锁执行，不会把连接加进一个已经从 map 中移除的池
+        channelMap.compute(inetSocketAddress, (key, pool) -> {
+            ChannelPool current = pool != null ? pool : new ChannelPool(connectionsPerAddress);
+            added.set(current.add(channel));
+            return current;
+        });
+        if (!added.get()) {
+            return false;
+        }
+        // 连接关闭后从池中移除，池空了就连同地址一起移除，下线的服务地址不会一直留在 map 中
+        channel.closeFuture().addListener(future -> channelMap.computeIfPresent(inetSocketAddress, (key, pool) -> {
+            pool.remove(channel);
+            return pool.isEmpty() ? null : pool;
+        }));
+        return true;
     }
 
     public void remove(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        channelMap.remove(key);
+        channelMap.remove(inetSocketAddress);
         log.info("Channel map size :[{}]", channelMap.size());
     }
 }
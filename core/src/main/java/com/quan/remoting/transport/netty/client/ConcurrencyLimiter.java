@@ -0,0 +1,202 @@
+package com.quan.remoting.transport.netty.client;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.enums.RpcErrorMessageEnum;
+import com.quan.exception.RpcException;
+import com.quan.metrics.RpcMetrics;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Description: 一个服务地址的自适应并发限制（gradient 算法）
+ * <p>
+ * 用最近的最小 RTT（服务端没有排队时的 RTT）与当前 RTT 的比值（gradient）调整并发上限：服务端开始排队时 RTT 变长，上限随之下降；
+ * RTT 正常时上限每次增加约 sqrt(limit)，请求超时或失败时上限乘以 0.9。
+ * 超过上限的请求最多排队 rpc.client.limit.max-wait-millis 毫秒，排队也满了立即失败，不把请求堆到已经变慢的服务端上。
+ * 空闲超过 rpc.client.endpoint-idle-seconds 的限制由 NettyRpcClient 移除
+ * date: 2026/10/18 下午 11:40
+ *
+ * @author Quan
+ */
+class ConcurrencyLimiter {
+
+    private static final boolean ENABLED = RpcConfigUtil.getBoolean(RpcConfigEnum.CLIENT_LIMIT_ENABLED, false);
+    private static final int INITIAL_LIMIT = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_LIMIT_INITIAL, 20);
+    private static final int MIN_LIMIT = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_LIMIT_MIN, 4));
+    private static final int MAX_LIMIT = Math.max(MIN_LIMIT, RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_LIMIT_MAX, 1000));
+    private static final int QUEUE_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_LIMIT_QUEUE_SIZE, 100);
+    private static final long MAX_WAIT_MILLIS = RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_LIMIT_MAX_WAIT, 20);
+    static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(Math.max(1, RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_ENDPOINT_IDLE, 300)));
+
+    /**
+     * 当前 RTT 不超过最小 RTT 的该倍数时认为服务端没有排队
+     */
+    private static final double RTT_TOLERANCE = 1.5;
+    /**
+     * 最小 RTT 取最近两个窗口的最小值，服务端整体变慢后最多两个窗口就能跟上
+     */
+    private static final long MIN_RTT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+    private static final LongAdder REJECTED = RpcMetrics.counter("client.limit.rejected");
+    private static final LongAdder QUEUED = RpcMetrics.counter("client.limit.queued");
+
+    private static Timer timer;
+
+    private final InetSocketAddress address;
+    private final String gaugeName;
+    private final Supplier<Map<String, Object>> gauge = this::toMap;
+    private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double limit = INITIAL_LIMIT;
+    private int inflight;
+    private long lastRttNanos;
+    private long currentMinRttNanos = Long.MAX_VALUE;
+    private long previousMinRttNanos = Long.MAX_VALUE;
+    private long windowStart = System.nanoTime();
+    private long lastUsed = System.nanoTime();
+
+    ConcurrencyLimiter(InetSocketAddress address) {
+        this.address = address;
+        this.gaugeName = "client.limit." + address.getHostString() + ":" + address.getPort();
+        RpcMetrics.gauge(gaugeName, gauge);
+    }
+
+    /**
+     * @return true if requests to each address are limited, the limit is opt-in
+     */
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return a future completed when the request may be sent, failed with {@link RpcException} if the limit is
+     * reached and the queue is full or the request waited too long; every successful acquire must be released once
+     */
+    synchronized CompletableFuture<Void> acquire() {
+        lastUsed = System.nanoTime();
+        if (inflight < (int) limit) {
+            inflight++;
+            return ACQUIRED;
+        }
+        if (waiters.size() >= QUEUE_SIZE || MAX_WAIT_MILLIS <= 0) {
+            return reject();
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        QUEUED.increment();
+        timer().newTimeout(t -> {
+            synchronized (this) {
+                if (waiters.remove(waiter)) {
+                    REJECTED.increment();
+                    waiter.completeExceptionally(exception());
+                }
+            }
+        }, MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        return waiter;
+    }
+
+    /**
+     * @param rttNanos time from sending the request to receiving the response
+     * @param dropped  true if the request timed out or failed, the limit backs off
+     */
+    void release(long rttNanos, boolean dropped) {
+        CompletableFuture<Void> waiter;
+        synchronized (this) {
+            lastUsed = System.nanoTime();
+            if (dropped) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF);
+            } else {
+                update(rttNanos);
+            }
+            inflight--;
+            waiter = inflight < (int) limit ? waiters.poll() : null;
+            if (waiter != null) {
+                inflight++;
+            }
+        }
+        // 在锁外完成，等待的请求在当前线程继续发送
+        if (waiter != null) {
+            waiter.complete(null);
+        }
+    }
+
+    /**
+     * @return true if no request is in flight or queued and nothing was acquired or released for the idle time
+     */
+    synchronized boolean isIdle(long now) {
+        return inflight == 0 && waiters.isEmpty() && now - lastUsed > IDLE_NANOS;
+    }
+
+    /**
+     * the limiter is removed, unregister its gauge
+     */
+    void close() {
+        RpcMetrics.removeGauge(gaugeName, gauge);
+    }
+
+    private void update(long rttNanos) {
+        lastRttNanos = rttNanos;
+        long now = System.nanoTime();
+        if (now - windowStart > MIN_RTT_WINDOW_NANOS) {
+            previousMinRttNanos = currentMinRttNanos;
+            currentMinRttNanos = Long.MAX_VALUE;
+            windowStart = now;
+        }
+        currentMinRttNanos = Math.min(currentMinRttNanos, rttNanos);
+        // 只用到上限一半以下的并发时 RTT 说明不了上限是否合适，不调整上限
+        if (inflight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * minRttNanos() / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, newLimit));
+    }
+
+    private long minRttNanos() {
+        return Math.min(currentMinRttNanos, previousMinRttNanos);
+    }
+
+    private CompletableFuture<Void> reject() {
+        REJECTED.increment();
+        CompletableFuture<Void> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(exception());
+        return rejected;
+    }
+
+    private RpcException exception() {
+        return new RpcException(RpcErrorMessageEnum.CONCURRENCY_LIMIT_EXCEEDED, address + ", limit: " + (int) limit);
+    }
+
+    private static synchronized Timer timer() {
+        if (timer == null) {
+            timer = new HashedWheelTimer(new DefaultThreadFactory("rpc-limit-queue", true), 5, TimeUnit.MILLISECONDS);
+        }
+        return timer;
+    }
+
+    private synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("limit", (int) limit);
+        map.put("inflight", inflight);
+        map.put("queued", waiters.size());
+        map.put("rttMicros", lastRttNanos / 1000);
+        long minRttNanos = minRttNanos();
+        map.put("minRttMicros", minRttNanos == Long.MAX_VALUE ? 0 : minRttNanos / 1000);
+        return map;
+    }
+}
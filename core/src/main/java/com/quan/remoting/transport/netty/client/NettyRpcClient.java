@@ -1,32 +1,47 @@
 package com.quan.remoting.transport.netty.client;
 
 import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.enums.RpcErrorMessageEnum;
+import com.quan.enums.RpcResponseCodeEnum;
 import com.quan.enums.SerializationTypeEnum;
+import com.quan.exception.RpcException;
 import com.quan.extension.ExtensionLoader;
+import com.quan.loadbalance.EndpointStats;
+import com.quan.metrics.RpcMetrics;
 import com.quan.registry.ServiceDiscovery;
 import com.quan.remoting.constants.RpcConstants;
 import com.quan.remoting.dto.RpcMessage;
 import com.quan.remoting.dto.RpcRequest;
 import com.quan.remoting.dto.RpcResponse;
 import com.quan.remoting.transport.RpcRequestTransport;
+import com.quan.remoting.transport.netty.TransportUtils;
 import com.quan.remoting.transport.netty.codec.RpcMessageDecoder;
 import com.quan.remoting.transport.netty.codec.RpcMessageEncoder;
+import com.quan.remoting.transport.netty.codec.WriteCoalescingHandler;
+import com.quan.remoting.transport.netty.codec.ZstdDictionaryHandler;
+import com.quan.serialize.SerializerUtils;
+import com.quan.utils.RpcConfigUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-
-import static io.netty.bootstrap.Bootstrap.doConnect;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 /**
  * Description:
@@ -37,10 +52,22 @@ import static io.netty.bootstrap.Bootstrap.doConnect;
 
 @Slf4j
 public class NettyRpcClient implements RpcRequestTransport {
+    // 请求使用的压缩类型，默认 gzip
+    private static final CompressTypeEnum COMPRESS_TYPE = compressType();
+    // 默认请求超时时间
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    // 幂等方法连接断开后最多重试的次数
+    private static final int RETRIES = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_RETRIES, 1);
+    // 重试时最多查询几次注册中心来找一个不同的服务地址
+    private static final int RETRY_LOOKUP_TIMES = 3;
+    private static final LongAdder RETRY_COUNTER = RpcMetrics.counter("client.requests.retries");
+
     // 服务发现
     private final ServiceDiscovery serviceDiscovery;
 
-    private final UnprocessedRequests unprocessedRequests;
+    // 请求使用的序列化方式和压缩类型
+    private final byte codec;
+    private final byte compress;
 
     private final ChannelProvider channelProvider;
 
@@ -48,12 +75,43 @@ public class NettyRpcClient implements RpcRequestTransport {
 
     private final EventLoopGroup eventLoopGroup;
 
+    // 每个服务的请求超时时间
+    private final Map<String, Long> serviceTimeouts = new ConcurrentHashMap<>();
+
+    // 正在建立的连接，同一地址只保留一个
+    private final Map<InetSocketAddress, CompletableFuture<Channel>> connectingChannels = new ConcurrentHashMap<>();
+
+    // 每个服务配置为幂等、可以自动重试的方法
+    private final Map<String, Set<String>> idempotentMethods = new ConcurrentHashMap<>();
+
+    // 每个服务地址的并发限制，只在开启 rpc.client.limit.enabled 时使用
+    private final Map<InetSocketAddress, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    // 上次清理空闲的并发限制的时间
+    private final AtomicLong lastLimiterSweep = new AtomicLong(System.nanoTime());
+
+    // 已经把接口类型注册到序列化器的服务
+    private final Set<String> registeredServices = ConcurrentHashMap.newKeySet();
+
     public NettyRpcClient() {
-        eventLoopGroup = new NioEventLoopGroup();   // 同步非阻塞事件驱动
+        this(ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension("zk"),
+                SerializationTypeEnum.HESSIAN2, COMPRESS_TYPE);
+    }
+
+    /**
+     * @param serviceDiscovery where to look up the provider of each request, e.g. a fixed address in benchmarks
+     * @param serialization    serialization of the requests, the server responds with the same one
+     * @param compress         compress type of the requests
+     */
+    public NettyRpcClient(ServiceDiscovery serviceDiscovery, SerializationTypeEnum serialization, CompressTypeEnum compress) {
+        this.serviceDiscovery = serviceDiscovery;
+        this.codec = serialization.getCode();
+        this.compress = compress.getCode();
+        eventLoopGroup = TransportUtils.eventLoopGroup(0);   // 同步非阻塞事件驱动，Linux 上使用 epoll
 
         bootstrap = new Bootstrap();
         bootstrap.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
+                .channel(TransportUtils.socketChannelClass())
                 .handler(new LoggingHandler(LogLevel.INFO))   // 日志级别
                 // 连接超时时间，超过该时间建立不上则连接失败
                 // 如果15秒内没有数据发送，则发送一次心跳包
@@ -67,78 +125,298 @@ public class NettyRpcClient implements RpcRequestTransport {
                         p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
                         p.addLast(new RpcMessageEncoder());     // RpcRequyest -> Bytebuf
                         p.addLast(new RpcMessageDecoder());     // Bytebuf -> RpcResponse
+                        if (WriteCoalescingHandler.isEnabled()) {
+                            p.addLast(new WriteCoalescingHandler());
+                        }
+                        p.addLast(new ZstdDictionaryHandler());  // Zstd 字典协商
                         p.addLast(new NettyRpcClientHandler());
                     }
                 });
 
-        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension("zk");
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        TransportUtils.applyOptions(bootstrap);
+
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
     }
 
 
-    // 获取指定的channel渠道
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
+    // 获取指定的channel渠道，连接还没建立好时返回的 future 在连接成功后完成
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
         // channelProvider: 中介者模式
         Channel channel = channelProvider.get(inetSocketAddress);
-        if (channel == null) {
-            // 不存在连接，则新建一个
-            channel = doConnect(inetSocketAddress);
-            channelProvider.set(inetSocketAddress, channel);
+        if (channel != null && !channelProvider.hasVacancy(inetSocketAddress)) {
+            return CompletableFuture.completedFuture(channel);
         }
-        return channel;
+        // 不存在连接或者连接数不足，则新建一个；同一地址同时只有一个连接在建立，并发调用共享它的 future
+        CompletableFuture<Channel> connectFuture = connectingChannels.get(inetSocketAddress);
+        if (connectFuture == null) {
+            CompletableFuture<Channel> created = new CompletableFuture<>();
+            connectFuture = connectingChannels.putIfAbsent(inetSocketAddress, created);
+            if (connectFuture == null) {
+                connectFuture = created;
+                doConnect(inetSocketAddress, created);
+            }
+        }
+        // 已有可用连接时不等待新连接
+        return channel != null ? CompletableFuture.completedFuture(channel) : connectFuture;
     }
 
-    // 建立网络连接，并创建channel
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
-        // ?
-        CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
-        bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
-            if (future.isSuccess()) {
+    // 建立网络连接，并创建channel，不阻塞调用线程；所有等待这个连接的请求共享 future，无论哪种结果都要完成它
+    private void doConnect(InetSocketAddress inetSocketAddress, CompletableFuture<Channel> completableFuture) {
+        try {
+            bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
+                // 先移除，之后的调用可以再发起新的连接
+                connectingChannels.remove(inetSocketAddress, completableFuture);
+                if (!future.isSuccess()) {
+                    // 连接失败时立即通知所有等待这个连接的请求
+                    log.error("The client failed to connect [{}]", inetSocketAddress, future.cause());
+                    completableFuture.completeExceptionally(future.cause());
+                    return;
+                }
                 log.info("The client has connected [{}] successful!", inetSocketAddress.toString());
-                completableFuture.complete(future.channel());
-            } else {
-                throw new IllegalStateException();
-            }
-        });
-
-        return completableFuture.get();
+                Channel channel = future.channel();
+                try {
+                    if (!channelProvider.set(inetSocketAddress, channel)) {
+                        channel.close();
+                        channel = channelProvider.get(inetSocketAddress);
+                    }
+                } catch (Exception e) {
+                    channel.close();
+                    completableFuture.completeExceptionally(e);
+                    return;
+                }
+                if (channel == null) {
+                    // 池已满，但池中的连接在这期间都断开了
+                    completableFuture.completeExceptionally(
+                            new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE, inetSocketAddress.toString()));
+                    return;
+                }
+                completableFuture.complete(channel);
+            });
+        } catch (Exception e) {
+            // event loop 已经关闭时 connect 直接抛出
+            connectingChannels.remove(inetSocketAddress, completableFuture);
+            completableFuture.completeExceptionally(e);
+        }
     }
 
-    // 建立连接
+    // 建立连接，使用服务配置的超时时间
     @Override
     public Object sendRpcRequest(RpcRequest rpcRequest) {
+        return sendRpcRequest(rpcRequest, serviceTimeouts.computeIfAbsent(rpcRequest.getRpcServiceName(),
+                serviceName -> RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_TIMEOUT, serviceName, DEFAULT_TIMEOUT_MILLIS)));
+    }
+
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest, long timeoutMillis) {
         // 采用异步调用的方式建立
         CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        registerServiceTypes(rpcRequest.getInterfaceName());
+        // 超时从发起调用开始计算，包括等待连接建立和重试的时间
+        UnprocessedRequests.timeout(resultFuture, rpcRequest.getRpcServiceName(), timeoutMillis);
         // 注册中心获取IP
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        send(rpcRequest, inetSocketAddress, resultFuture, isIdempotent(rpcRequest) ? RETRIES : 0);
+
+        return resultFuture;
+    }
+
+    // 向指定地址发送一次请求，连接失败、发送失败或者连接断开时，幂等方法换一个服务地址重试
+    private void send(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress,
+                      CompletableFuture<RpcResponse<Object>> resultFuture, int retries) {
+        CompletableFuture<RpcResponse<Object>> attemptFuture = new CompletableFuture<>();
+        attemptFuture.whenComplete((response, cause) -> {
+            if (cause == null) {
+                resultFuture.complete(response);
+                return;
+            }
+            InetSocketAddress retryAddress = retries > 0 && !resultFuture.isDone()
+                    ? lookupOtherService(rpcRequest, inetSocketAddress) : null;
+            if (retryAddress == null) {
+                resultFuture.completeExceptionally(cause);
+                return;
+            }
+            log.warn("Request [{}#{}] to [{}] failed, retry on [{}]: {}", rpcRequest.getRpcServiceName(),
+                    rpcRequest.getMethodName(), inetSocketAddress, retryAddress, cause.getMessage());
+            RETRY_COUNTER.increment();
+            send(rpcRequest, retryAddress, resultFuture, retries - 1);
+        });
+        if (!ConcurrencyLimiter.isEnabled()) {
+            track(rpcRequest, inetSocketAddress, attemptFuture, resultFuture, null);
+            return;
+        }
+        removeIdleLimiters();
+        // 超过服务地址的并发上限时短暂排队，排不上则这次尝试失败
+        ConcurrencyLimiter limiter = limiters.computeIfAbsent(inetSocketAddress, ConcurrencyLimiter::new);
+        limiter.acquire().whenComplete((v, cause) -> {
+            if (cause != null) {
+                attemptFuture.completeExceptionally(cause);
+                return;
+            }
+            track(rpcRequest, inetSocketAddress, attemptFuture, resultFuture, limiter);
+        });
+    }
 
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            // 记录未被服务端处理的信息
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
-            // 组装信息
-            RpcMessage rpcMessage = RpcMessage.builder()
-                    .data(rpcRequest)
-                    .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
-                    .messageType(RpcConstants.REQUEST_TYPE)
-                    .build();
-
-            channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
-                if (future.isSuccess()) {
-                    log.info("Client send message: [{}]", rpcMessage);
-                } else {
+    // 下线或者不再调用的服务地址不会一直占着内存和指标；每个空闲周期最多检查一次
+    private void removeIdleLimiters() {
+        long now = System.nanoTime();
+        long lastSweep = lastLimiterSweep.get();
+        if (now - lastSweep < ConcurrencyLimiter.IDLE_NANOS || !lastLimiterSweep.compareAndSet(lastSweep, now)) {
+            return;
+        }
+        limiters.forEach((address, limiter) -> {
+            // 检查之后刚取到它的请求仍在它上面计数，只是不再影响新的限制
+            if (limiter.isIdle(now) && limiters.remove(address, limiter)) {
+                limiter.close();
+            }
+        });
+    }
+
+    // 统计这次尝试的延迟，收到响应、发送失败或者超时，先发生的一个结束统计并归还并发数
+    private void track(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress,
+                       CompletableFuture<RpcResponse<Object>> attemptFuture,
+                       CompletableFuture<RpcResponse<Object>> resultFuture, ConcurrencyLimiter limiter) {
+        // 每个服务地址的在途请求数和延迟，供负载均衡使用；空闲的地址会被移除，每次都从 EndpointStats 取
+        EndpointStats stats = EndpointStats.of(inetSocketAddress);
+        stats.onStart();
+        long start = System.nanoTime();
+        AtomicBoolean completed = new AtomicBoolean();
+        BiConsumer<RpcResponse<Object>, Throwable> onComplete = (response, error) -> {
+            if (completed.compareAndSet(false, true)) {
+                long rttNanos = System.nanoTime() - start;
+                boolean failed = error != null || (response != null
+                        && Integer.valueOf(RpcResponseCodeEnum.REJECTED.getCode()).equals(response.getCode()));
+                stats.onComplete(rttNanos, failed);
+                if (limiter != null) {
+                    limiter.release(rttNanos, failed);
+                }
+            }
+        };
+        attemptFuture.whenComplete(onComplete);
+        resultFuture.whenComplete(onComplete);
+        connectAndWrite(rpcRequest, inetSocketAddress, attemptFuture, resultFuture);
+    }
+
+    private void connectAndWrite(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress,
+                                 CompletableFuture<RpcResponse<Object>> attemptFuture,
+                                 CompletableFuture<RpcResponse<Object>> resultFuture) {
+        // 连接建立之前请求排队等待，连接成功后再发送
+        getChannel(inetSocketAddress).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                attemptFuture.completeExceptionally(cause);
+                return;
+            }
+            // 请求表只在连接的 event loop 中读写
+            EventLoop eventLoop = channel.eventLoop();
+            if (eventLoop.inEventLoop()) {
+                write(channel, rpcRequest, attemptFuture, resultFuture);
+            } else {
+                eventLoop.execute(() -> write(channel, rpcRequest, attemptFuture, resultFuture));
+            }
+        });
+    }
+
+    private void write(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> attemptFuture,
+                       CompletableFuture<RpcResponse<Object>> resultFuture) {
+        if (resultFuture.isDone()) {
+            // 等待连接期间已经超时
+            return;
+        }
+        if (!channel.isActive()) {
+            // channelInactive 已经执行过，不能再登记到这条连接的请求表中
+            attemptFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CONNECTION_CLOSED, String.valueOf(channel.remoteAddress())));
+            return;
+        }
+        // 记录未被服务端处理的信息，得到这条连接上的请求 ID
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+        int requestId = unprocessedRequests.put(rpcRequest, attemptFuture);
+        // 超时或者被取消时从请求表中移除
+        resultFuture.whenComplete((response, cause) -> {
+            if (cause != null) {
+                channel.eventLoop().execute(() -> unprocessedRequests.remove(requestId));
+            }
+        });
+        // 组装信息
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .data(rpcRequest)
+                .codec(codec)
+                .compress(compress)
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .requestId(requestId)
+                .serviceName(rpcRequest.getRpcServiceName())
+                .methodName(rpcRequest.getMethodName())
+                .build();
+
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.info("Client send message: [{}]", rpcMessage);
+            } else {
+                log.error("Send failed:", future.cause());
+                // 编码失败时编码器已经丢掉了这一帧，连接上的数据是完整的，不影响其他请求
+                if (!(future.cause() instanceof EncoderException)) {
                     future.channel().close();
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("Send failed:", future.cause());
                 }
-            });
-        } else {
-            throw new IllegalStateException();
+                if (unprocessedRequests.remove(requestId) != null) {
+                    attemptFuture.completeExceptionally(future.cause());
+                }
+            }
+        });
+    }
+
+    // 关闭所有连接，不再处理响应
+    public void shutdown() {
+        eventLoopGroup.shutdownGracefully().syncUninterruptibly();
+    }
+
+    // 换一个服务地址，注册中心只返回失败的地址时放弃重试
+    private InetSocketAddress lookupOtherService(RpcRequest rpcRequest, InetSocketAddress failedAddress) {
+        for (int i = 0; i < RETRY_LOOKUP_TIMES; i++) {
+            try {
+                InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+                if (!inetSocketAddress.equals(failedAddress)) {
+                    return inetSocketAddress;
+                }
+            } catch (RpcException e) {
+                log.warn("No other provider of [{}]: {}", rpcRequest.getRpcServiceName(), e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // 只有配置为幂等的方法才自动重试，重复执行非幂等方法可能产生副作用
+    private boolean isIdempotent(RpcRequest rpcRequest) {
+        return RETRIES > 0 && idempotentMethods.computeIfAbsent(rpcRequest.getRpcServiceName(), serviceName -> {
+            String methods = RpcConfigUtil.getString(RpcConfigEnum.CLIENT_IDEMPOTENT, serviceName, "");
+            Set<String> methodNames = new HashSet<>();
+            for (String method : methods.split(",")) {
+                if (!method.trim().isEmpty()) {
+                    methodNames.add(method.trim());
+                }
+            }
+            return methodNames;
+        }).contains(rpcRequest.getMethodName());
+    }
+
+    // 首次调用某个服务时，把服务接口涉及的类型注册到序列化器，与服务端发布时的注册保持一致
+    private void registerServiceTypes(String interfaceName) {
+        if (registeredServices.contains(interfaceName)) {
+            return;
+        }
+        try {
+            SerializerUtils.registerServiceInterface(Class.forName(interfaceName));
+        } catch (ClassNotFoundException e) {
+            log.warn("Service interface [{}] not found, skip registering its types", interfaceName);
         }
+        registeredServices.add(interfaceName);
+    }
 
-        return resultFuture;
+    private static CompressTypeEnum compressType() {
+        String name = RpcConfigUtil.getString(RpcConfigEnum.COMPRESS_TYPE, CompressTypeEnum.GZIP.getName());
+        CompressTypeEnum compressType = CompressTypeEnum.getByName(name);
+        if (compressType == null) {
+            log.warn("Unknown compress type [{}], use [{}]", name, CompressTypeEnum.GZIP.getName());
+            return CompressTypeEnum.GZIP;
+        }
+        return compressType;
     }
 }
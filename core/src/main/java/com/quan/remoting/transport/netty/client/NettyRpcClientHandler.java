@@ -1,7 +1,9 @@
 package com.quan.remoting.transport.netty.client;
 
 import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcErrorMessageEnum;
 import com.quan.enums.SerializationTypeEnum;
+import com.quan.exception.RpcException;
 import com.quan.remoting.constants.RpcConstants;
 import com.quan.remoting.dto.RpcMessage;
 import com.quan.remoting.dto.RpcRequest;
@@ -16,8 +18,6 @@ import io.netty.util.ReferenceCountUtil;
 import io.protostuff.Rpc;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
-
 /**
  * Description:
  * date: 2023/02/21 下午 6:59
@@ -27,14 +27,6 @@ import java.net.InetSocketAddress;
 
 @Slf4j
 public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
-    private final UnprocessedRequests unprocessedRequests;
-    private final NettyRpcClient nettyRpcClient;
-
-    public NettyRpcClientHandler() {
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
-    }
-
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         try {
@@ -48,8 +40,8 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
                 // 如果是响应报文，则检查之前的请求是否被完成
                 else if (messageType == RpcConstants.RESPONSE_TYPE) {
                     RpcResponse<Object> rpcResponse = (RpcResponse<Object>) tmp.getData();
-                    // 从未处理信息中移除
-                    unprocessedRequests.complete(rpcResponse);
+                    // 从这条连接的未处理信息中移除，按协议头中的请求 ID 对应
+                    UnprocessedRequests.of(ctx.channel()).complete(tmp.getRequestId(), rpcResponse);
                 }
             }
         } finally {
@@ -59,6 +51,17 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
     }
 
 
+    // 连接断开，这条连接上还在等待响应的请求全部失败，不必等到超时
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(ctx.channel());
+        if (unprocessedRequests.size() > 0) {
+            log.warn("Channel [{}] closed, fail [{}] pending requests", ctx.channel(), unprocessedRequests.size());
+            unprocessedRequests.failAll(new RpcException(RpcErrorMessageEnum.CONNECTION_CLOSED, String.valueOf(ctx.channel().remoteAddress())));
+        }
+        super.channelInactive(ctx);
+    }
+
     // 捕获用户事件
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
@@ -68,8 +71,8 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
             if (state == IdleState.WRITER_IDLE) {
                 log.info("Write idle happen [{}]", ctx.channel());
 
-                // 获取发生事件的渠道
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
+                // 获取发生事件的渠道，同一地址有多条连接，心跳要发在空闲的这条连接上
+                Channel channel = ctx.channel();
                 // 建立心跳包信息
                 RpcMessage rpcMessage = new RpcMessage();
                 rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
@@ -1,30 +1,213 @@
 package com.quan.remoting.transport.netty.client;
 
+import com.quan.enums.RpcErrorMessageEnum;
+import com.quan.exception.RpcException;
+import com.quan.metrics.RpcMetrics;
+import com.quan.remoting.dto.RpcRequest;
 import com.quan.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Description: 用于暂存未被处理的服务端信息
+ * <p>
+ * 每条连接一张表，请求 ID 是连接内自增的 int，写在协议头中，响应带回同一个 ID。
+ * 表是以 ID 低位为下标的槽数组，只在连接的 event loop 线程中读写，不需要加锁，也不需要装箱和哈希。
+ * 请求超时由所有请求共用的 HashedWheelTimer 触发，连接断开时这条连接上的请求全部立即失败
  * date: 2023/02/23 下午 4:34
  *
  * @author Quan
  */
+@Slf4j
 public class UnprocessedRequests {
-    public static final Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
+    private static final AttributeKey<UnprocessedRequests> UNPROCESSED_REQUESTS = AttributeKey.valueOf("unprocessedRequests");
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * 时间轮精度 10ms，超时时间本身通常是秒级，不需要更精确
+     */
+    private static final Timer TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-request-timeout", true), 10, TimeUnit.MILLISECONDS);
+    private static final LongAdder PENDING = RpcMetrics.counter("client.requests.pending");
+    private static final LongAdder TIMEOUTS = RpcMetrics.counter("client.requests.timeouts");
+    private static final LongAdder CLOSED = RpcMetrics.counter("client.requests.failed-on-close");
 
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    private PendingRequest[] slots = new PendingRequest[INITIAL_CAPACITY];
+    /**
+     * 0 保留给没有请求 ID 的消息
+     */
+    private int nextId;
+    private volatile int size;
+
+    public UnprocessedRequests() {
+        this(1);
+    }
+
+    /**
+     * @param firstId id of the first request, tests start near the end of the int range to cover the wraparound
+     */
+    UnprocessedRequests(int firstId) {
+        this.nextId = firstId;
+    }
+
+    /**
+     * @return the table of the channel, created on first use
+     */
+    public static UnprocessedRequests of(Channel channel) {
+        UnprocessedRequests unprocessedRequests = channel.attr(UNPROCESSED_REQUESTS).get();
+        if (unprocessedRequests == null) {
+            UnprocessedRequests created = new UnprocessedRequests();
+            unprocessedRequests = channel.attr(UNPROCESSED_REQUESTS).setIfAbsent(created);
+            if (unprocessedRequests == null) {
+                unprocessedRequests = created;
+            }
+        }
+        return unprocessedRequests;
+    }
+
+    /**
+     * complete the future exceptionally if it is not done in time, the timer is cancelled when the future completes
+     *
+     * @param serviceName   rpc service name of the request, timeouts are counted per service
+     * @param timeoutMillis 0 means no timeout
+     */
+    public static void timeout(CompletableFuture<RpcResponse<Object>> future, String serviceName, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return;
+        }
+        Timeout timeout = TIMER.newTimeout(t -> {
+            if (future.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                    "service: " + serviceName + ", timeout: " + timeoutMillis + "ms"))) {
+                TIMEOUTS.increment();
+                RpcMetrics.counter("client.requests.timeouts." + serviceName).increment();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((response, cause) -> timeout.cancel());
     }
 
-    public void complete(RpcResponse<Object> rpcResponse) {
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
-        if (null != future) {
-            future.complete(rpcResponse);
+    /**
+     * must be called in the event loop of the channel
+     *
+     * @return the request id to write into the header
+     */
+    public int put(RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> future) {
+        if (size == slots.length) {
+            grow();
+        }
+        int mask = slots.length - 1;
+        while (true) {
+            int id = nextId++;
+            // 槽被更早的请求占用时跳过这个 ID
+            if (id != 0 && slots[id & mask] == null) {
+                slots[id & mask] = new PendingRequest(id, rpcRequest, future);
+                size++;
+                PENDING.increment();
+                return id;
+            }
+        }
+    }
+
+    /**
+     * must be called in the event loop of the channel
+     *
+     * @return the removed request, null if it has been completed or removed
+     */
+    public PendingRequest remove(int requestId) {
+        int index = requestId & (slots.length - 1);
+        PendingRequest pendingRequest = slots[index];
+        if (pendingRequest == null || pendingRequest.id != requestId) {
+            return null;
+        }
+        slots[index] = null;
+        size--;
+        PENDING.decrement();
+        return pendingRequest;
+    }
+
+    /**
+     * must be called in the event loop of the channel
+     */
+    public void complete(int requestId, RpcResponse<Object> rpcResponse) {
+        PendingRequest pendingRequest = remove(requestId);
+        if (null != pendingRequest) {
+            // 请求 ID 不再随消息体传输，这里补回调用方生成的 ID
+            rpcResponse.setRequestId(pendingRequest.rpcRequest.getRequestId());
+            pendingRequest.future.complete(rpcResponse);
         } else {
-            throw new IllegalStateException();
+            // 已经超时的请求，响应直接丢弃
+            log.warn("No pending request for response [{}], it may have timed out", requestId);
+        }
+    }
+
+    /**
+     * fail all requests of the channel, must be called in the event loop of the channel
+     */
+    public void failAll(Throwable cause) {
+        if (size == 0) {
+            return;
+        }
+        // 先清空再通知，回调中可能在其他连接上重试
+        List<PendingRequest> failed = new ArrayList<>(size);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                failed.add(slots[i]);
+                slots[i] = null;
+            }
+        }
+        size = 0;
+        PENDING.add(-failed.size());
+        CLOSED.add(failed.size());
+        for (PendingRequest pendingRequest : failed) {
+            pendingRequest.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * @return number of requests waiting for a response on the channel
+     */
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        PendingRequest[] grown = new PendingRequest[slots.length << 1];
+        int mask = grown.length - 1;
+        // 低位不同的 ID 在更大的掩码下仍然不同，不会冲突
+        for (PendingRequest pendingRequest : slots) {
+            if (pendingRequest != null) {
+                grown[pendingRequest.id & mask] = pendingRequest;
+            }
+        }
+        slots = grown;
+    }
+
+    public static final class PendingRequest {
+        private final int id;
+        private final RpcRequest rpcRequest;
+        private final CompletableFuture<RpcResponse<Object>> future;
+
+        private PendingRequest(int id, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> future) {
+            this.id = id;
+            this.rpcRequest = rpcRequest;
+            this.future = future;
+        }
+
+        public RpcRequest getRpcRequest() {
+            return rpcRequest;
+        }
+
+        public CompletableFuture<RpcResponse<Object>> getFuture() {
+            return future;
         }
     }
 }
@@ -1,6 +1,7 @@
 package com.quan.remoting.transport.netty.codec;
 
 import com.quan.compress.Compress;
+import com.quan.compress.zstd.ZstdDictionary;
 import com.quan.enums.CompressTypeEnum;
 import com.quan.enums.SerializationTypeEnum;
 import com.quan.extension.ExtensionLoader;
@@ -11,11 +12,14 @@ import com.quan.remoting.dto.RpcResponse;
 import com.quan.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.protostuff.Rpc;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Description:
@@ -40,6 +44,7 @@ import java.util.Arrays;
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
+ * compress 的低 4 位是这一帧实际使用的压缩类型，高 4 位是发送方配置的压缩类型，服务端按它压缩响应
  * </pre>
  * <p>
  * {@link LengthFieldBasedFrameDecoder} is a length-based decoder , used to solve TCP unpacking and sticking problems.
@@ -81,7 +86,13 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
             // 大于header的长度，保证了header的完整
             if (frame.readableBytes() >= RpcConstants.TOTAL_LENGTH) {
                 try {
-                    return decodeFrame(frame);
+                    RpcMessage rpcMessage = (RpcMessage) decodeFrame(frame);
+                    if (rpcMessage.getMessageType() == RpcConstants.BATCH_TYPE) {
+                        // 合并写的批量帧在这里拆开，后面的 handler 只看到单条消息，不依赖对端是否开启合并写
+                        fireBatch(ctx, rpcMessage);
+                        return null;
+                    }
+                    return rpcMessage;
                 } catch (Exception e) {
                     log.error("Decode frame error!", e);
                     throw e;
@@ -106,16 +117,22 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
         int fullLength = in.readInt();
         byte messateType = in.readByte();
         byte codecType = in.readByte();
-        byte compressType = in.readByte();
+        byte compressByte = in.readByte();
+        byte compressType = (byte) (compressByte & 0x0F);
         int requestId = in.readInt();
 
-        // 组装信息
+        // 组装信息，消息中保存发送方配置的压缩类型
         RpcMessage rpcMessage = RpcMessage.builder()
                 .codec(codecType)
+                .compress((byte) ((compressByte >> 4) & 0x0F))
                 .requestId(requestId)
                 .messageType(messateType)
                 .build();
 
+        if (messateType == RpcConstants.BATCH_TYPE) {
+            rpcMessage.setData(decodeBatch(in));
+            return rpcMessage;
+        }
         if (messateType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
             rpcMessage.setData(RpcConstants.PING);
             return rpcMessage;
@@ -127,30 +144,74 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
 
         int bodyLength = fullLength - RpcConstants.HEAD_LENGTH;
         if (bodyLength > 0) {
-            // 读取body
-            byte[] bytes = new byte[bodyLength];
-            in.readBytes(bytes);
+            // 直接在 frame 上切片读取body，不再拷贝成 byte[]
+            ByteBuf body = in.readSlice(bodyLength);
+            String codecName = SerializationTypeEnum.getName(codecType);
+            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
+            Class<?> bodyClass = bodyClass(messateType);
 
-            // 解压
+            if (compressType == CompressTypeEnum.NONE.getCode()) {
+                // 未压缩，直接在 frame 上反序列化
+                rpcMessage.setData(serializer.deserialize(body, bodyClass));
+                return rpcMessage;
+            }
+
+            // 解压到池化的 ByteBuf，再反序列化；最大容量限制住按报文中的原始长度扩容
             String compressName = CompressTypeEnum.getName(compressType);
             Compress compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
-            bytes = compress.compress(bytes);
-
-            // 反序列化
-            String codecName = SerializationTypeEnum.getName(codecType);
-            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
-            if (messateType == RpcConstants.REQUEST_TYPE) {
-                RpcRequest tmp = serializer.deserialize(bytes, RpcRequest.class);
-                rpcMessage.setData(tmp);
-            } else {
-                RpcResponse tmp = serializer.deserialize(bytes, RpcResponse.class);
-                rpcMessage.setData(tmp);
+            ByteBuf decompressed = in.alloc().buffer(bodyLength, Compress.MAX_DECOMPRESSED_LENGTH);
+            try {
+                compress.decompress(body, decompressed);
+                rpcMessage.setData(serializer.deserialize(decompressed, bodyClass));
+            } finally {
+                decompressed.release();
             }
         }
 
         return rpcMessage;
     }
 
+    /**
+     * ByteToMessageDecoder fires the messages decoded earlier before calling decode again, so firing here keeps the order
+     */
+    @SuppressWarnings("unchecked")
+    private void fireBatch(ChannelHandlerContext ctx, RpcMessage batch) {
+        for (RpcMessage message : (List<RpcMessage>) batch.getData()) {
+            ctx.fireChannelRead(message);
+        }
+    }
+
+    /**
+     * the body of a batch frame is a sequence of complete frames, a batch is never nested in another batch
+     */
+    private List<RpcMessage> decodeBatch(ByteBuf in) {
+        List<RpcMessage> messages = new ArrayList<>();
+        while (in.isReadable()) {
+            if (in.readableBytes() < RpcConstants.HEAD_LENGTH) {
+                throw new CorruptedFrameException("truncated frame in batch: " + in.readableBytes() + " bytes");
+            }
+            int lengthIndex = in.readerIndex() + RpcConstants.MAGIC_NUMBER.length + 1;
+            int fullLength = in.getInt(lengthIndex);
+            if (fullLength < RpcConstants.HEAD_LENGTH || fullLength > in.readableBytes()) {
+                throw new CorruptedFrameException("invalid frame length in batch: " + fullLength);
+            }
+            if (in.getByte(lengthIndex + 4) == RpcConstants.BATCH_TYPE) {
+                throw new CorruptedFrameException("nested batch frame");
+            }
+            messages.add((RpcMessage) decodeFrame(in.readSlice(fullLength)));
+        }
+        return messages;
+    }
+
+    private Class<?> bodyClass(byte messageType) {
+        if (messageType == RpcConstants.REQUEST_TYPE) {
+            return RpcRequest.class;
+        }
+        if (messageType == RpcConstants.DICTIONARY_TYPE || messageType == RpcConstants.DICTIONARY_ACK_TYPE) {
+            return ZstdDictionary.class;
+        }
+        return RpcResponse.class;
+    }
 
     private void checkVersion(ByteBuf in) {
         // read the version and compare
@@ -7,19 +7,26 @@ package com.quan.remoting.transport.netty.codec;
  * @author Quan
  */
 
+import com.quan.compress.AdaptiveCompressSelector;
 import com.quan.compress.Compress;
+import com.quan.compress.zstd.ZstdDictionary;
+import com.quan.compress.zstd.ZstdDictionaryCompress;
+import com.quan.compress.zstd.ZstdDictionaryManager;
 import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcConfigEnum;
 import com.quan.enums.SerializationTypeEnum;
 import com.quan.extension.ExtensionLoader;
 import com.quan.remoting.constants.RpcConstants;
 import com.quan.remoting.dto.RpcMessage;
 import com.quan.serialize.Serializer;
+import com.quan.utils.RpcConfigUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 
 /**
  * <p>
@@ -38,15 +45,23 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
+ * compress 的低 4 位是这一帧实际使用的压缩类型，高 4 位是 {@link RpcMessage#getCompress()}（发送方配置的压缩类型）
  **/
 
 @Slf4j
 public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
-    // 原子类没有并发安全问题
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+    // 消息体小于该字节数时压缩得不偿失，直接发送原始数据
+    private static final int COMPRESS_MIN_BODY_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_MIN_BODY_SIZE, 1024);
+    // 按方法统计压缩率和耗时，自动选择压缩算法或者不压缩
+    private static final boolean COMPRESS_ADAPTIVE = RpcConfigUtil.getBoolean(RpcConfigEnum.COMPRESS_ADAPTIVE, false);
 
     @Override
     protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf out) {
+        if (rpcMessage.getMessageType() == RpcConstants.BATCH_TYPE) {
+            encodeBatch(ctx, rpcMessage, out);
+            return;
+        }
+        int start = out.writerIndex();
         try {
             // 填充协议中的信息
             out.writeBytes(RpcConstants.MAGIC_NUMBER);
@@ -57,11 +72,14 @@ public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
             byte messateType = rpcMessage.getMessageType();
             out.writeByte(messateType);
             out.writeByte(rpcMessage.getCodec());
-            out.writeByte(CompressTypeEnum.GZIP.getCode());
-            out.writeInt(ATOMIC_INTEGER.getAndIncrement()); // 使用atomic变量自增
+            // 实际的压缩类型在写完body后回填到低 4 位，未压缩时为 NONE；高 4 位带上配置的压缩类型，
+            // 请求很小没有压缩时，服务端仍然知道客户端希望响应怎样压缩
+            int compressIndex = out.writerIndex();
+            int configuredCompress = rpcMessage.getCompress() << 4;
+            out.writeByte(configuredCompress | CompressTypeEnum.NONE.getCode());
+            out.writeInt(rpcMessage.getRequestId()); // 客户端按连接分配的请求 ID，响应原样带回
 
             // 构建body信息
-            byte[] bodyBytes = null;
             int fullLength = RpcConstants.HEAD_LENGTH;
             // 非心跳报文：fullLength = head length + body length
             if (messateType != RpcConstants.HEARTBEAT_REQUEST_TYPE && messateType != RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
@@ -72,19 +90,23 @@ public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
                 // TODO ExtensionLoader 作用？？？
                 // 获取序列化工具
                 Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
-                // 序列化
-                bodyBytes = serializer.serialize(rpcMessage.getData());
-
-                // 压缩bodyBytes
-                String compressName = CompressTypeEnum.getName(rpcMessage.getCompress());
-                Compress compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
-                bodyBytes = compress.compress(bodyBytes);
 
-                fullLength += bodyBytes.length;
-            }
-
-            if (bodyBytes != null) {
-                out.writeBytes(bodyBytes);
+                int bodyStart = out.writerIndex();
+                byte compressType = rpcMessage.getCompress();
+                if (compressType == CompressTypeEnum.NONE.getCode()) {
+                    // 不压缩时直接序列化到 out
+                    serializer.serialize(rpcMessage.getData(), out);
+                } else {
+                    // 序列化到池化的临时 ByteBuf，再直接压缩写入 out，全程不产生中间 byte[]
+                    ByteBuf body = ctx.alloc().buffer();
+                    try {
+                        serializer.serialize(rpcMessage.getData(), body);
+                        out.setByte(compressIndex, configuredCompress | compressBody(ctx, rpcMessage, body, out));
+                    } finally {
+                        body.release();
+                    }
+                }
+                fullLength += out.writerIndex() - bodyStart;
             }
 
             // 写回fullLength
@@ -96,8 +118,92 @@ public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
             out.writerIndex(writeIndex);
 
         } catch (Exception e) {
-            log.error("Encode request error!", e);
+            // 丢掉写了一半的帧，否则对端按未回填的长度解析出错后只能断开连接；抛出后这次 write 的 promise 失败
+            out.writerIndex(start);
+            throw e instanceof EncoderException ? (EncoderException) e : new EncoderException(e);
+        }
+    }
+
+    /**
+     * batch frame: a header followed by the complete frames of the packed messages, if any of them fails to encode
+     * the whole batch is discarded and all of its writes fail
+     */
+    private void encodeBatch(ChannelHandlerContext ctx, RpcMessage batch, ByteBuf out) {
+        int start = out.writerIndex();
+        out.writeBytes(RpcConstants.MAGIC_NUMBER);
+        out.writeByte(RpcConstants.VERSION);
+        out.writerIndex(out.writerIndex() + 4);
+        out.writeByte(RpcConstants.BATCH_TYPE);
+        out.writeByte(0);
+        out.writeByte(CompressTypeEnum.NONE.getCode());
+        out.writeInt(0);
+        @SuppressWarnings("unchecked")
+        List<RpcMessage> messages = (List<RpcMessage>) batch.getData();
+        try {
+            for (RpcMessage message : messages) {
+                encode(ctx, message, out);
+            }
+        } catch (EncoderException e) {
+            out.writerIndex(start);
+            throw e;
+        }
+        int fullLength = out.writerIndex() - start;
+        if (fullLength > RpcConstants.MAX_FRAME_LENGTH) {
+            // 对端无法接收这么大的帧，去掉 batch 帧头，里面的消息按普通帧逐个解码
+            out.readerIndex(start + RpcConstants.HEAD_LENGTH);
+            return;
+        }
+        out.setInt(start + RpcConstants.MAGIC_NUMBER.length + 1, fullLength);
+    }
+
+    /**
+     * compress the serialized body into {@code out}
+     *
+     * @return the compress type actually used, written back into the header
+     */
+    private byte compressBody(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf body, ByteBuf out) {
+        byte compressType = rpcMessage.getCompress();
+        if (compressType == CompressTypeEnum.ZSTD_DICT.getCode()) {
+            ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+            dictionaryManager.sample(rpcMessage.getServiceName(), body);
+            ZstdDictionary dictionary = dictionaryManager.getDictionary(rpcMessage.getServiceName());
+            // 有字典时小报文也值得压缩，不受 COMPRESS_MIN_BODY_SIZE 限制；对端还没确认的字典不能使用
+            if (dictionary != null && ZstdDictionaryHandler.isAccepted(ctx.channel(), dictionary.getId())) {
+                ZstdDictionaryCompress compress = (ZstdDictionaryCompress) ExtensionLoader.getExtensionLoader(Compress.class)
+                        .getExtension(CompressTypeEnum.ZSTD_DICT.getName());
+                compress.compress(body, out, dictionary.getId());
+                return compressType;
+            }
+        }
+        if (body.readableBytes() < COMPRESS_MIN_BODY_SIZE) {
+            out.writeBytes(body);
+            return CompressTypeEnum.NONE.getCode();
+        }
+        if (COMPRESS_ADAPTIVE) {
+            return compressAdaptive(rpcMessage, body, out);
+        }
+        String compressName = CompressTypeEnum.getName(compressType);
+        Compress compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
+        compress.compress(body, out);
+        return compressType;
+    }
+
+    private byte compressAdaptive(RpcMessage rpcMessage, ByteBuf body, ByteBuf out) {
+        AdaptiveCompressSelector selector = AdaptiveCompressSelector.getInstance();
+        String method = rpcMessage.getServiceName() + "#" + rpcMessage.getMethodName();
+        byte compressType = selector.select(method);
+        if (compressType == CompressTypeEnum.NONE.getCode()) {
+            out.writeBytes(body);
+            return compressType;
         }
+        Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
+                .getExtension(CompressTypeEnum.getName(compressType));
+        int rawLength = body.readableBytes();
+        int start = out.writerIndex();
+        long begin = System.nanoTime();
+        compress.compress(body, out);
+        selector.record(method, compressType, rawLength, out.writerIndex() - start, System.nanoTime() - begin);
+        return compressType;
     }
 
 }
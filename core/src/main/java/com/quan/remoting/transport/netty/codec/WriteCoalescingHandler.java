@@ -0,0 +1,161 @@
+package com.quan.remoting.transport.netty.codec;
+
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.metrics.RpcMetrics;
+import com.quan.remoting.constants.RpcConstants;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description: 合并写，把多次 writeAndFlush 合并成一次 flush（一次 write 系统调用）
+ * <p>
+ * 收到 flush 时不立即执行，攒够 rpc.flush.max-writes 条消息或者等待 rpc.flush.max-delay-micros 微秒后再 flush；
+ * 开启 rpc.flush.batch 后，同一次 flush 中的多条 {@link RpcMessage} 打包成一个
+ * {@link RpcConstants#BATCH_TYPE} 帧，对端由 {@link RpcMessageDecoder} 拆包，后面的 handler 看到的仍然是单条消息
+ * date: 2026/10/18 下午 7:30
+ *
+ * @author Quan
+ */
+public class WriteCoalescingHandler extends ChannelDuplexHandler {
+
+    private static final int MAX_WRITES = RpcConfigUtil.getInt(RpcConfigEnum.FLUSH_MAX_WRITES, 0);
+    private static final long MAX_DELAY_MICROS = RpcConfigUtil.getLong(RpcConfigEnum.FLUSH_MAX_DELAY_MICROS, 100);
+    private static final boolean BATCH = RpcConfigUtil.getBoolean(RpcConfigEnum.FLUSH_BATCH, false);
+
+    private static final LongAdder WRITES = RpcMetrics.counter("flush.writes");
+    private static final LongAdder FLUSHES = RpcMetrics.counter("flush.flushes");
+    private static final LongAdder BATCHES = RpcMetrics.counter("flush.batches");
+
+    /**
+     * 未打包发送的消息和对应的 promise，只在 batch 模式下使用
+     */
+    private final List<RpcMessage> pendingMessages = new ArrayList<>();
+    private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+    private int pendingWrites;
+    private boolean flushPending;
+    private ScheduledFuture<?> flushTask;
+    private ChannelHandlerContext ctx;
+
+    /**
+     * @return true if the handler should be added to the pipeline, flush consolidation is opt-in
+     */
+    public static boolean isEnabled() {
+        return MAX_WRITES > 0;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        WRITES.increment();
+        pendingWrites++;
+        if (BATCH && msg instanceof RpcMessage) {
+            pendingMessages.add((RpcMessage) msg);
+            pendingPromises.add(promise);
+        } else {
+            // 不能打包的消息，保持顺序先写出已攒的消息
+            writePendingMessages();
+            ctx.write(msg, promise);
+        }
+        if (pendingWrites >= MAX_WRITES) {
+            flushNow();
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pendingWrites == 0) {
+            return;
+        }
+        flushPending = true;
+        if (flushTask == null) {
+            flushTask = ctx.executor().schedule(this::flushNow, MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // 写缓冲已满，尽快把攒着的数据刷出去
+            flushNow();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushNow();
+        super.close(ctx, promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushNow();
+        super.disconnect(ctx, promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushNow();
+    }
+
+    private void flushNow() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        writePendingMessages();
+        if (pendingWrites > 0 || flushPending) {
+            pendingWrites = 0;
+            flushPending = false;
+            FLUSHES.increment();
+            ctx.flush();
+        }
+    }
+
+    private void writePendingMessages() {
+        int size = pendingMessages.size();
+        if (size == 0) {
+            return;
+        }
+        if (size == 1) {
+            ctx.write(pendingMessages.get(0), pendingPromises.get(0));
+        } else {
+            BATCHES.increment();
+            RpcMessage batch = RpcMessage.builder()
+                    .messageType(RpcConstants.BATCH_TYPE)
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .data(new ArrayList<>(pendingMessages))
+                    .build();
+            ChannelPromise[] promises = pendingPromises.toArray(new ChannelPromise[0]);
+            ctx.write(batch).addListener((ChannelFutureListener) future -> complete(future, promises));
+        }
+        pendingMessages.clear();
+        pendingPromises.clear();
+    }
+
+    private static void complete(ChannelFuture future, ChannelPromise[] promises) {
+        for (ChannelPromise promise : promises) {
+            if (future.isSuccess()) {
+                promise.trySuccess();
+            } else {
+                promise.tryFailure(future.cause());
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.quan.remoting.transport.netty.codec;
+
+import com.quan.compress.zstd.ZstdDictionary;
+import com.quan.compress.zstd.ZstdDictionaryManager;
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.remoting.constants.RpcConstants;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: 连接上 Zstd 字典的协商
+ * <p>
+ * 连接建立时把本端所有字典发给对端，之后新训练出的字典在第一次需要时发送；对端加载后回复确认，
+ * {@link RpcMessageEncoder} 只使用对端确认过的字典压缩，保证对端一定能解压。
+ * 对端的字典由加载它的连接持有，连接断开时释放；每条连接最多加载 rpc.compress.zstd.max-peer-dicts 个，超出的不确认
+ * date: 2026/10/18 下午 6:10
+ *
+ * @author Quan
+ */
+@Slf4j
+public class ZstdDictionaryHandler extends ChannelDuplexHandler {
+
+    private static final AttributeKey<Set<Integer>> OFFERED_DICTIONARIES = AttributeKey.valueOf("offeredZstdDictionaries");
+    private static final AttributeKey<Set<Integer>> ACCEPTED_DICTIONARIES = AttributeKey.valueOf("acceptedZstdDictionaries");
+    private static final AttributeKey<Set<Integer>> PEER_DICTIONARIES = AttributeKey.valueOf("peerZstdDictionaries");
+
+    private static final int MAX_PEER_DICTIONARIES = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_MAX_PEER, 64);
+
+    private final ZstdDictionaryManager dictionaryManager = ZstdDictionaryManager.getInstance();
+
+    /**
+     * @return true if the peer of the channel has loaded the dictionary
+     */
+    public static boolean isAccepted(Channel channel, int dictionaryId) {
+        Set<Integer> accepted = channel.attr(ACCEPTED_DICTIONARIES).get();
+        return accepted != null && accepted.contains(dictionaryId);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        for (ZstdDictionary dictionary : dictionaryManager.getDictionaries()) {
+            offer(ctx, dictionary);
+        }
+        ctx.flush();
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RpcMessage) {
+            RpcMessage rpcMessage = (RpcMessage) msg;
+            if (rpcMessage.getMessageType() == RpcConstants.DICTIONARY_TYPE) {
+                ZstdDictionary dictionary = (ZstdDictionary) rpcMessage.getData();
+                if (load(ctx.channel(), dictionary)) {
+                    ZstdDictionary ack = new ZstdDictionary(dictionary.getId(), dictionary.getServiceName(), null);
+                    ctx.writeAndFlush(dictionaryMessage(RpcConstants.DICTIONARY_ACK_TYPE, ack))
+                            .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                }
+                return;
+            }
+            if (rpcMessage.getMessageType() == RpcConstants.DICTIONARY_ACK_TYPE) {
+                ZstdDictionary ack = (ZstdDictionary) rpcMessage.getData();
+                dictionaries(ctx.channel(), ACCEPTED_DICTIONARIES).add(ack.getId());
+                log.info("Zstd dictionary [{}] of [{}] accepted by [{}]", ack.getId(), ack.getServiceName(),
+                        ctx.channel().remoteAddress());
+                return;
+            }
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Set<Integer> peerDictionaries = ctx.channel().attr(PEER_DICTIONARIES).getAndSet(null);
+        if (peerDictionaries != null) {
+            peerDictionaries.forEach(dictionaryManager::releasePeerDictionary);
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof RpcMessage && ((RpcMessage) msg).getCompress() == CompressTypeEnum.ZSTD_DICT.getCode()) {
+            // 连接建立后才训练出来的字典，在第一条需要它的消息之前发送
+            ZstdDictionary dictionary = dictionaryManager.getDictionary(((RpcMessage) msg).getServiceName());
+            if (dictionary != null) {
+                offer(ctx, dictionary);
+            }
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    /**
+     * @return true if the dictionary is loaded for the channel and can be acknowledged
+     */
+    private boolean load(Channel channel, ZstdDictionary dictionary) {
+        Set<Integer> peerDictionaries = dictionaries(channel, PEER_DICTIONARIES);
+        if (peerDictionaries.contains(dictionary.getId())) {
+            return true;
+        }
+        if (peerDictionaries.size() >= MAX_PEER_DICTIONARIES) {
+            log.warn("Too many zstd dictionaries from [{}], dictionary [{}] of [{}] ignored", channel.remoteAddress(),
+                    dictionary.getId(), dictionary.getServiceName());
+            return false;
+        }
+        if (!dictionaryManager.retainPeerDictionary(dictionary)) {
+            return false;
+        }
+        peerDictionaries.add(dictionary.getId());
+        return true;
+    }
+
+    private void offer(ChannelHandlerContext ctx, ZstdDictionary dictionary) {
+        if (dictionaries(ctx.channel(), OFFERED_DICTIONARIES).add(dictionary.getId())) {
+            ctx.write(dictionaryMessage(RpcConstants.DICTIONARY_TYPE, dictionary))
+                    .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+    }
+
+    private static RpcMessage dictionaryMessage(byte messageType, ZstdDictionary dictionary) {
+        return RpcMessage.builder()
+                .messageType(messageType)
+                .codec(SerializationTypeEnum.PROTOSTUFF.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(dictionary)
+                .build();
+    }
+
+    private static Set<Integer> dictionaries(Channel channel, AttributeKey<Set<Integer>> key) {
+        Set<Integer> dictionaries = channel.attr(key).get();
+        if (dictionaries == null) {
+            Set<Integer> created = ConcurrentHashMap.newKeySet();
+            dictionaries = channel.attr(key).setIfAbsent(created);
+            if (dictionaries == null) {
+                dictionaries = created;
+            }
+        }
+        return dictionaries;
+    }
+}
@@ -0,0 +1,160 @@
+package com.quan.remoting.transport.netty.server;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.metrics.RpcMetrics;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description: 按排队时间自动调整大小的服务线程池
+ * <p>
+ * 记录每个任务的排队时间和执行时间，每隔 rpc.server.executor.tune-interval-millis 调整一次线程数：
+ * 平均排队时间超过目标值时扩容到 到达率 × 平均执行时间（Little 定律估算的忙碌线程数）再留 25% 余量，
+ * 至少加一个线程；排队时间远低于目标值且线程有富余时逐步缩容，线程数始终在 [min, max] 之间
+ * date: 2026/10/18 下午 11:10
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class AdaptiveExecutor implements Executor {
+
+    private static final double HEADROOM = 1.25;
+
+    private static final LongAdder GROW = RpcMetrics.counter("server.executor.grow");
+    private static final LongAdder SHRINK = RpcMetrics.counter("server.executor.shrink");
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long targetWaitNanos;
+    private final long intervalNanos;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService tuner;
+
+    /**
+     * 当前统计周期内提交的任务数，以及完成的任务数、排队时间和执行时间
+     */
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+
+    /**
+     * 最近一个统计周期的结果，只在调整线程中写
+     */
+    private volatile long lastWaitMicros;
+    private volatile long lastServiceMicros;
+    private volatile long lastThroughput;
+    private volatile String lastDecision = "none";
+
+    public AdaptiveExecutor() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        this.minThreads = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_EXECUTOR_MIN_THREADS, cpus));
+        this.maxThreads = Math.max(minThreads, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_EXECUTOR_MAX_THREADS, cpus * 16));
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(RpcConfigUtil.getLong(RpcConfigEnum.SERVER_EXECUTOR_TARGET_WAIT, 5));
+        long intervalMillis = Math.max(100, RpcConfigUtil.getLong(RpcConfigEnum.SERVER_EXECUTOR_TUNE_INTERVAL, 1000));
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.executor = new ThreadPoolExecutor(minThreads, minThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new DefaultThreadFactory("service-handler-adaptive", false));
+
+        this.tuner = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("service-handler-tuner", true));
+        tuner.scheduleAtFixedRate(this::tune, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        RpcMetrics.gauge("server.executor", this::toMap);
+        log.info("Adaptive executor threads [{}, {}], target queueing delay [{}ms]", minThreads, maxThreads,
+                TimeUnit.NANOSECONDS.toMillis(targetWaitNanos));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long submitTime = System.nanoTime();
+        submitted.increment();
+        executor.execute(() -> {
+            long started = System.nanoTime();
+            try {
+                command.run();
+            } finally {
+                waitNanos.add(started - submitTime);
+                serviceNanos.add(System.nanoTime() - started);
+                tasks.increment();
+            }
+        });
+    }
+
+    private void tune() {
+        long arrivals = submitted.sumThenReset();
+        long count = tasks.sumThenReset();
+        long totalWait = waitNanos.sumThenReset();
+        long totalService = serviceNanos.sumThenReset();
+        int size = executor.getMaximumPoolSize();
+        // 还在排队的任务没有计入排队时间，队列不空说明线程不够
+        int queued = executor.getQueue().size();
+        long avgWait = count == 0 ? 0 : totalWait / count;
+        long avgService = count == 0 ? 0 : totalService / count;
+        // Little 定律：需要的线程数 = 到达率 × 执行时间；线程不够时完成数受限于线程数，所以用提交数估算到达率，
+        // 再加上在一个周期内处理完积压任务需要的线程
+        double busyThreads = (double) (arrivals + queued) * avgService / intervalNanos;
+        lastWaitMicros = avgWait / 1000;
+        lastServiceMicros = avgService / 1000;
+        lastThroughput = count * TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+
+        int newSize = size;
+        if ((avgWait > targetWaitNanos || (count == 0 && queued > 0)) && size < maxThreads) {
+            newSize = Math.min(maxThreads, Math.max(size + 1, (int) Math.ceil(busyThreads * HEADROOM)));
+        } else if (avgWait < targetWaitNanos / 2 && queued == 0 && size > minThreads) {
+            // 每次最多缩掉四分之一，避免流量抖动时大起大落
+            int needed = (int) Math.ceil(busyThreads * HEADROOM);
+            if (needed < size) {
+                newSize = Math.max(minThreads, Math.max(needed, size - Math.max(1, size / 4)));
+            }
+        }
+        if (newSize != size) {
+            resize(newSize);
+            lastDecision = String.format("%d -> %d (wait %dus, service %dus, %d tasks/s, queued %d)",
+                    size, newSize, lastWaitMicros, lastServiceMicros, lastThroughput, queued);
+            log.info("Resize service executor {}", lastDecision);
+            (newSize > size ? GROW : SHRINK).increment();
+        }
+    }
+
+    private void resize(int newSize) {
+        // 扩容先调大 max，缩容先调小 core，保证任何时候 core <= max
+        if (newSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(newSize);
+            executor.setCorePoolSize(newSize);
+        } else {
+            executor.setCorePoolSize(newSize);
+            executor.setMaximumPoolSize(newSize);
+        }
+    }
+
+    public void shutdown() {
+        tuner.shutdownNow();
+        executor.shutdown();
+    }
+
+    private Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("threads", executor.getMaximumPoolSize());
+        map.put("min", minThreads);
+        map.put("max", maxThreads);
+        map.put("active", executor.getActiveCount());
+        map.put("queued", executor.getQueue().size());
+        map.put("waitMicros", lastWaitMicros);
+        map.put("serviceMicros", lastServiceMicros);
+        map.put("tasksPerSecond", lastThroughput);
+        map.put("targetWaitMicros", targetWaitNanos / 1000);
+        map.put("lastDecision", lastDecision);
+        return map;
+    }
+}
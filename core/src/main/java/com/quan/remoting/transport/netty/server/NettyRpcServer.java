@@ -1,12 +1,18 @@
 package com.quan.remoting.transport.netty.server;
 
+import com.quan.config.RpcServiceConfig;
+import com.quan.enums.RpcConfigEnum;
+import com.quan.remoting.handler.MethodInvokers;
+import com.quan.remoting.transport.netty.TransportUtils;
 import com.quan.remoting.transport.netty.codec.RpcMessageDecoder;
 import com.quan.remoting.transport.netty.codec.RpcMessageEncoder;
+import com.quan.remoting.transport.netty.codec.WriteCoalescingHandler;
+import com.quan.remoting.transport.netty.codec.ZstdDictionaryHandler;
+import com.quan.serialize.SerializerUtils;
+import com.quan.utils.RpcConfigUtil;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
@@ -16,6 +22,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,11 +38,25 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class NettyRpcServer {
 
-    public static final int PORT = 9998;
+    public static final int PORT = RpcConfigUtil.getInt(RpcConfigEnum.SERVER_PORT, 9998);
+    private static final int BACKLOG = RpcConfigUtil.getInt(RpcConfigEnum.SERVER_BACKLOG, 128);
+    private static final int ACCEPTORS = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_ACCEPTORS, 1));
+    private static final int WRITE_BUFFER_HIGH = RpcConfigUtil.getInt(RpcConfigEnum.SERVER_WRITE_BUFFER_HIGH, 1024 * 1024);
+    private static final int WRITE_BUFFER_LOW = Math.min(WRITE_BUFFER_HIGH,
+            RpcConfigUtil.getInt(RpcConfigEnum.SERVER_WRITE_BUFFER_LOW, 256 * 1024));
+    private static final String EXECUTOR_VIRTUAL = "virtual";
+    private static final String EXECUTOR_ADAPTIVE = "adaptive";
 
     private final ServiceProvider serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
 
     public void registerService(RpcServiceConfig rpcServiceConfig) {
+        // 发布时创建方法表，处理请求时不再反射查找方法
+        MethodInvokers.getInstance().register(rpcServiceConfig);
+        // 启动阶段提前注册服务接口涉及的类型，避免运行时再注册
+        for (Class<?> serviceInterface : rpcServiceConfig.getService().getClass().getInterfaces()) {
+            SerializerUtils.registerServiceInterface(serviceInterface);
+        }
+        // 准备好之后才发布到注册中心，失败时客户端不会被路由到这个服务
         serviceProvider.publishService(rpcServiceConfig);
     }
 
@@ -42,10 +65,16 @@ public class NettyRpcServer {
         CustomShutdownHook.getCustomShutdownHook().clearAll();  // 将所有旧连接池关闭并清空
         String host = InetAddress.getLocalHost().getHostAddress();
 
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        // Linux 上使用 epoll，否则使用 NIO；每个 acceptor 一个线程
+        int acceptors = ACCEPTORS;
+        EventLoopGroup bossGroup = TransportUtils.eventLoopGroup(acceptors);
+        EventLoopGroup workerGroup = TransportUtils.eventLoopGroup(0);
+        // virtual 模式下每个请求一个虚拟线程，不支持虚拟线程时退回线程池；adaptive 模式按排队时间调整线程数
+        String executorType = RpcConfigUtil.getString(RpcConfigEnum.SERVER_EXECUTOR, "pool");
+        AdaptiveExecutor adaptiveExecutor = EXECUTOR_ADAPTIVE.equalsIgnoreCase(executorType) ? new AdaptiveExecutor() : null;
+        Executor serviceExecutor = EXECUTOR_VIRTUAL.equalsIgnoreCase(executorType) ? VirtualThreads.newExecutor() : adaptiveExecutor;
         // 使用池化技术管理 EventExecutor --- 类似与线程池
-        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(
+        DefaultEventExecutorGroup serviceHandlerGroup = serviceExecutor != null ? null : new DefaultEventExecutorGroup(
                 // IO密集型，2倍CPU数的线程
                 RuntimeUtil.cpus() * 2,
                 ThreadPoolFactoryUtil.createThreadFactory("service-handler-group", false)
@@ -54,13 +83,15 @@ public class NettyRpcServer {
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(TransportUtils.serverSocketChannelClass())
                     // TCP默认开启了 Nagle 算法，该算法的作用是尽可能的发送大数据快，减少网络传输。TCP_NODELAY 参数的作用就是控制是否启用 Nagle 算法。
                     .childOption(ChannelOption.TCP_NODELAY, true)
                     // 是否开启 TCP 底层心跳机制
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // 写缓冲超过高水位时连接变为不可写，NettyRpcServerHandler 暂停读取请求，降到低水位后恢复
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(WRITE_BUFFER_LOW, WRITE_BUFFER_HIGH))
                     //表示系统用于临时存放已完成三次握手的请求的队列的最大长度,如果连接建立频繁，服务器处理创建新连接较慢，可以适当调大这个参数
-                    .option(ChannelOption.SO_BACKLOG, 128)
+                    .option(ChannelOption.SO_BACKLOG, BACKLOG)
                     .handler(new LoggingHandler(LogLevel.INFO))
                     // 当客户端第一次进行请求的时候才会进行初始化
                     .childHandler(new ChannelInitializer<SocketChannel>() {
@@ -71,21 +102,44 @@ public class NettyRpcServer {
                             p.addLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS));
                             p.addLast(new RpcMessageEncoder());
                             p.addLast(new RpcMessageDecoder());
-                            p.addLast(serviceHandlerGroup, new NettyRpcServerHandler());
+                            if (WriteCoalescingHandler.isEnabled()) {
+                                p.addLast(new WriteCoalescingHandler());
+                            }
+                            p.addLast(new ZstdDictionaryHandler());
+                            // handler 在 event loop 中查找方法，再按方法的线程模型交给共用线程池、独占线程池或者直接执行
+                            p.addLast(new NettyRpcServerHandler(serviceExecutor != null ? serviceExecutor : serviceHandlerGroup));
                         }
                     });
 
-            // 绑定端口，同步等待绑定成功
-            ChannelFuture f = b.bind(host, PORT).sync();
+            TransportUtils.applyOptions(b);
+            // 多个 acceptor 通过 SO_REUSEPORT 绑定同一端口，由内核把新连接分摊到各个监听 socket
+            if (acceptors > 1 && !TransportUtils.applyReusePort(b)) {
+                log.warn("SO_REUSEPORT needs the epoll transport, use one acceptor instead of [{}]", acceptors);
+                acceptors = 1;
+            }
+
+            // 绑定端口，同步等待绑定成功；每次 bind 注册到 bossGroup 中的下一个 event loop
+            List<Channel> serverChannels = new ArrayList<>(acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(b.bind(host, PORT).sync().channel());
+            }
+            log.info("Server listening on [{}:{}] with [{}] acceptors", host, PORT, acceptors);
             // 等待服务端监听端口关闭
-            f.channel().closeFuture().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             log.error("occur exception when start server:", e);
         } finally {
             log.error("shutdown bossGroup and workerGroup");
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
-            serviceHandlerGroup.shutdownGracefully();
+            if (serviceHandlerGroup != null) {
+                serviceHandlerGroup.shutdownGracefully();
+            }
+            if (adaptiveExecutor != null) {
+                adaptiveExecutor.shutdown();
+            }
         }
     }
 }
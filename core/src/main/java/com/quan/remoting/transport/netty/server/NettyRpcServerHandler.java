@@ -1,23 +1,36 @@
 package com.quan.remoting.transport.netty.server;
 
-import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.RpcConfigEnum;
 import com.quan.enums.RpcResponseCodeEnum;
-import com.quan.enums.SerializationTypeEnum;
+import com.quan.metrics.RpcMetrics;
 import com.quan.remoting.constants.RpcConstants;
 import com.quan.remoting.dto.RpcMessage;
 import com.quan.remoting.dto.RpcRequest;
 import com.quan.remoting.dto.RpcResponse;
+import com.quan.remoting.handler.MethodInvoker;
 import com.quan.remoting.handler.RpcRequestHandler;
-import io.netty.channel.ChannelFutureListener;
+import com.quan.utils.RpcConfigUtil;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Description:
+ * <p>
+ * 写缓冲超过高水位、连接不可写时暂停读取该连接的请求，已算出的响应按顺序暂存，
+ * 连接恢复可写后先写出暂存的响应再恢复读取；暂存超过 rpc.server.pending-responses 条时关闭连接
  * date: 2023/02/23 下午 4:57
  *
  * @author Quan
@@ -25,10 +38,31 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
 
+    private static final int MAX_PENDING_RESPONSES = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_PENDING_RESPONSES, 1024));
+
+    private static final LongAdder PAUSED = RpcMetrics.counter("server.backpressure.paused");
+    private static final LongAdder QUEUED = RpcMetrics.counter("server.backpressure.queued");
+    private static final LongAdder CLOSED = RpcMetrics.counter("server.backpressure.closed");
+
     private final RpcRequestHandler rpcRequestHandler;
 
+    /**
+     * 所有服务共用的 executor，null 表示在当前 handler 的线程中执行
+     */
+    private final Executor sharedExecutor;
+
+    /**
+     * 连接不可写时暂存的响应，每个连接一个 handler，只在 event loop 中访问
+     */
+    private final Queue<RpcMessage> pendingResponses = new ArrayDeque<>();
+
     public NettyRpcServerHandler() {
+        this(null);
+    }
+
+    public NettyRpcServerHandler(Executor sharedExecutor) {
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.sharedExecutor = sharedExecutor;
     }
 
     @Override
@@ -36,36 +70,12 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
         try {
             if (msg instanceof RpcMessage) {
                 log.info("server receive msg: [{}] ", msg);
-
-                // 获取参数
-                byte messageType = ((RpcMessage) msg).getMessageType();
-                RpcMessage rpcMessage = new RpcMessage();
-                rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
-
-                if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
-                    rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
-                    rpcMessage.setData(RpcConstants.PONG);
+                RpcMessage request = (RpcMessage) msg;
+                if (request.getMessageType() == RpcConstants.REQUEST_TYPE) {
+                    dispatch(ctx, request);
                 } else {
-                    RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-
-                    // 调用对应的方法处理 RPC 请求，并返回 Object 结果
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-                    rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
-
-                    // 判断当前连接是否正常，正常则返回响应数据
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
-                        rpcMessage.setData(rpcResponse);
-                    } else {
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writable now, message dropped");
-                    }
+                    respond(ctx, request, null);
                 }
-
-                ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
         } finally {
             //Ensure that ByteBuf is released, otherwise there may be memory leaks
@@ -73,6 +83,168 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    // 按方法的线程模型选择执行的线程，解码和查找方法都在 event loop 中完成
+    private void dispatch(ChannelHandlerContext ctx, RpcMessage request) {
+        MethodInvoker invoker = rpcRequestHandler.getInvoker((RpcRequest) request.getData());
+        Executor executor;
+        switch (invoker.getDispatchType()) {
+            case IO:
+                executor = null;
+                break;
+            case BULKHEAD:
+                executor = invoker.getExecutor();
+                break;
+            default:
+                executor = sharedExecutor;
+        }
+        if (executor == null) {
+            respond(ctx, request, invoker);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    respond(ctx, request, invoker);
+                } catch (Throwable e) {
+                    // 与在 event loop 中执行时一样交给 exceptionCaught 处理
+                    ctx.executor().execute(() -> exceptionCaught(ctx, e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池和队列都满了，直接返回拒绝响应，客户端不必等到超时
+            RpcRequest rpcRequest = (RpcRequest) request.getData();
+            log.warn("Request of [{}#{}] rejected, the service is busy", rpcRequest.getRpcServiceName(), rpcRequest.getMethodName());
+            RpcMessage rpcMessage = newResponse(request);
+            rpcMessage.setServiceName(rpcRequest.getRpcServiceName());
+            rpcMessage.setMethodName(rpcRequest.getMethodName());
+            rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+            rpcMessage.setData(RpcResponse.fail(RpcResponseCodeEnum.REJECTED));
+            write(ctx, rpcMessage);
+        }
+    }
+
+    private void respond(ChannelHandlerContext ctx, RpcMessage msg, MethodInvoker invoker) {
+        RpcMessage rpcMessage = newResponse(msg);
+        if (msg.getMessageType() == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
+            rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
+            rpcMessage.setData(RpcConstants.PONG);
+        } else {
+            RpcRequest rpcRequest = (RpcRequest) msg.getData();
+            rpcMessage.setServiceName(rpcRequest.getRpcServiceName());
+            rpcMessage.setMethodName(rpcRequest.getMethodName());
+
+            // 调用对应的方法处理 RPC 请求，并返回 Object 结果
+            Object result = rpcRequestHandler.handle(invoker, rpcRequest);
+            log.info(String.format("server get result: %s", result));
+            rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+            rpcMessage.setData(RpcResponse.success(result, rpcRequest.getRequestId()));
+        }
+        write(ctx, rpcMessage);
+    }
+
+    /**
+     * write the response on the event loop, queue it while the channel is not writable
+     */
+    private void write(ChannelHandlerContext ctx, RpcMessage rpcMessage) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> write(ctx, rpcMessage));
+            return;
+        }
+        Channel channel = ctx.channel();
+        if (!channel.isActive()) {
+            log.warn("Channel [{}] is closed, response dropped", channel.remoteAddress());
+            return;
+        }
+        // 已有暂存的响应时也要排队，保证响应的顺序
+        if (channel.isWritable() && pendingResponses.isEmpty()) {
+            ctx.writeAndFlush(rpcMessage).addListener(future -> onWritten(ctx, rpcMessage, future));
+            return;
+        }
+        if (pendingResponses.size() >= MAX_PENDING_RESPONSES) {
+            // 客户端长时间不读取响应，关闭连接，客户端上未完成的请求立即失败
+            log.warn("Channel [{}] has [{}] pending responses, close it", channel.remoteAddress(), pendingResponses.size());
+            CLOSED.increment();
+            pendingResponses.clear();
+            ctx.close();
+            return;
+        }
+        pendingResponses.add(rpcMessage);
+        QUEUED.increment();
+        pauseRead(channel);
+    }
+
+    /**
+     * a response that cannot be serialized or compressed is replaced with a FAIL response, the encoder has discarded
+     * its bytes and the connection is still usable; any other write failure closes the connection
+     */
+    private void onWritten(ChannelHandlerContext ctx, RpcMessage rpcMessage, Future<?> future) {
+        if (future.isSuccess()) {
+            return;
+        }
+        if (!(future.cause() instanceof EncoderException) || rpcMessage.getMessageType() != RpcConstants.RESPONSE_TYPE
+                || ((RpcResponse<?>) rpcMessage.getData()).getCode() != RpcResponseCodeEnum.SUCCESS.getCode()) {
+            ctx.close();
+            return;
+        }
+        log.error("Encode response of [{}#{}] failed", rpcMessage.getServiceName(), rpcMessage.getMethodName(), future.cause());
+        RpcMessage failure = newResponse(rpcMessage);
+        failure.setMessageType(RpcConstants.RESPONSE_TYPE);
+        failure.setServiceName(rpcMessage.getServiceName());
+        failure.setMethodName(rpcMessage.getMethodName());
+        failure.setData(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+        write(ctx, failure);
+    }
+
+    private static void pauseRead(Channel channel) {
+        if (channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+            PAUSED.increment();
+            log.info("Channel [{}] is not writable, stop reading requests", channel.remoteAddress());
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        Channel channel = ctx.channel();
+        if (channel.isWritable()) {
+            // 先写出暂存的响应，写到再次不可写为止
+            boolean written = false;
+            while (channel.isWritable() && !pendingResponses.isEmpty()) {
+                RpcMessage rpcMessage = pendingResponses.poll();
+                ctx.write(rpcMessage).addListener(future -> onWritten(ctx, rpcMessage, future));
+                written = true;
+            }
+            if (written) {
+                ctx.flush();
+            }
+            if (pendingResponses.isEmpty() && !channel.config().isAutoRead()) {
+                channel.config().setAutoRead(true);
+                log.info("Channel [{}] is writable, resume reading requests", channel.remoteAddress());
+            }
+        } else {
+            pauseRead(channel);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        pendingResponses.clear();
+        super.channelInactive(ctx);
+    }
+
+    private static RpcMessage newResponse(RpcMessage request) {
+        RpcMessage rpcMessage = new RpcMessage();
+        // 响应使用与请求相同的序列化方式
+        rpcMessage.setCodec(request.getCodec());
+        // 响应带回请求的 ID，客户端用它在连接的请求表中找到对应的调用
+        rpcMessage.setRequestId(request.getRequestId());
+        // 响应使用客户端配置的压缩方式（请求 header 中带来的，不是请求这一帧实际使用的），
+        // 是否真正压缩、用哪种算法由 RpcMessageEncoder 按大小和自适应统计决定
+        rpcMessage.setCompress(request.getCompress());
+        return rpcMessage;
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof IdleStateEvent) {
@@ -0,0 +1,104 @@
+package com.quan.remoting.transport.netty.server;
+
+import com.quan.enums.RpcConfigEnum;
+import com.quan.metrics.RpcMetrics;
+import com.quan.utils.RpcConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Description: 每个请求一个虚拟线程（Java 21+）
+ * <p>
+ * 项目按 Java 11 编译，虚拟线程和 JFR 事件流都通过反射使用，低版本 JDK 上 {@link #newExecutor()} 返回 null。
+ * 虚拟线程在 synchronized 块或 native 调用中阻塞时会占住载体线程（pinned），
+ * 通过 JFR 的 jdk.VirtualThreadPinned 事件统计 pinned 的次数和时间，与总执行时间对比
+ * date: 2026/10/18 下午 10:10
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final LongAdder EXECUTIONS = RpcMetrics.counter("server.virtual.executions");
+    private static final LongAdder EXECUTION_MICROS = RpcMetrics.counter("server.virtual.execution-micros");
+    private static final LongAdder PINNED = RpcMetrics.counter("server.virtual.pinned");
+    private static final LongAdder PINNED_MICROS = RpcMetrics.counter("server.virtual.pinned-micros");
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return an executor starting a new virtual thread for each task, null if virtual threads are not supported
+     */
+    public static Executor newExecutor() {
+        ExecutorService executorService;
+        try {
+            // 通过公开的接口类型反射，Thread.ofVirtual() 返回的实现类不是 public 的
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "rpc-virtual-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            executorService = (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Virtual threads are not supported by Java [{}]: {}", System.getProperty("java.version"), e.toString());
+            return null;
+        }
+        monitorPinning();
+        RpcMetrics.gauge("server.virtual.pinned-time-ratio", VirtualThreads::pinnedTimeRatio);
+        return task -> executorService.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                EXECUTIONS.increment();
+                EXECUTION_MICROS.add((System.nanoTime() - start) / 1000);
+            }
+        });
+    }
+
+    /**
+     * share of the execution time that virtual threads spent pinned to their carrier thread
+     */
+    private static String pinnedTimeRatio() {
+        long executionMicros = EXECUTION_MICROS.sum();
+        return executionMicros == 0 ? "0" : String.format("%.4f", (double) PINNED_MICROS.sum() / executionMicros);
+    }
+
+    /**
+     * count jdk.VirtualThreadPinned events with a JFR recording stream, pinning shorter than the threshold is not reported
+     */
+    private static void monitorPinning() {
+        long thresholdMillis = RpcConfigUtil.getLong(RpcConfigEnum.SERVER_VIRTUAL_PINNED_THRESHOLD, 20);
+        try {
+            Class<?> streamClass = Class.forName("jdk.jfr.consumer.RecordingStream");
+            Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            Method getDuration = recordedEventClass.getMethod("getDuration");
+            Object stream = streamClass.getConstructor().newInstance();
+            Object settings = streamClass.getMethod("enable", String.class).invoke(stream, PINNED_EVENT);
+            Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", Duration.class).invoke(settings, Duration.ofMillis(thresholdMillis));
+            Consumer<Object> onPinned = event -> {
+                PINNED.increment();
+                try {
+                    PINNED_MICROS.add(((Duration) getDuration.invoke(event)).toNanos() / 1000);
+                } catch (ReflectiveOperationException e) {
+                    log.debug("Read duration of [{}] failed", PINNED_EVENT, e);
+                }
+            };
+            streamClass.getMethod("onEvent", String.class, Consumer.class).invoke(stream, PINNED_EVENT, onPinned);
+            streamClass.getMethod("startAsync").invoke(stream);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Monitor [{}] events failed, pinned virtual threads are not counted: {}", PINNED_EVENT, e.toString());
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.quan.serialize;
 
 import com.quan.extension.SPI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.util.Collection;
 
 /**
  * Description: 序列化接口，所有序列化都需要实现这个接口
@@ -23,4 +27,30 @@ public interface Serializer {
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
 
+    // 序列化对象，直接写入 out 的 writerIndex 处，编码器使用该方法避免中间 byte[]
+    /*
+        默认实现退化为 byte[] 拷贝，具体实现应当覆盖该方法
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
+    // 反序列化，读取 in 中全部可读字节
+    /*
+        in: 只包含消息体的 ByteBuf（通常是 frame 的 slice），调用方负责释放
+     */
+    default <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        return deserialize(bytes, clazz);
+    }
+
+    // 注册服务接口中出现的参数、返回值类型，在服务发布或客户端首次调用该服务时执行
+    /*
+        serviceTypes: 服务接口方法的参数类型和返回值类型，见 SerializerUtils#collectServiceTypes
+        默认不做任何事，需要提前注册类型或预热 schema 的实现覆盖该方法
+     */
+    default void registerServiceTypes(Collection<Class<?>> serviceTypes) {
+    }
+
 }
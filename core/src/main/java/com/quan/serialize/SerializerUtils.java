@@ -0,0 +1,78 @@
+package com.quan.serialize;
+
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.extension.ExtensionLoader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Description: 在服务发布 / 首次调用时，把服务接口涉及的类型提前注册到所有序列化实现
+ * date: 2026/10/18 下午 4:20
+ *
+ * @author Quan
+ */
+@Slf4j
+public final class SerializerUtils {
+
+    private SerializerUtils() {
+    }
+
+    /**
+     * Register the parameter and return types of {@code serviceInterface} to every serializer extension,
+     * a serializer that fails to register them does not affect the others
+     */
+    public static void registerServiceInterface(Class<?> serviceInterface) {
+        Collection<Class<?>> serviceTypes = collectServiceTypes(serviceInterface);
+        for (SerializationTypeEnum serializationType : SerializationTypeEnum.values()) {
+            try {
+                Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serializationType.getName());
+                serializer.registerServiceTypes(serviceTypes);
+            } catch (Exception e) {
+                log.error("Register types of [{}] to serializer [{}] failed", serviceInterface.getCanonicalName(),
+                        serializationType.getName(), e);
+            }
+        }
+        log.info("Service [{}] types registered to serializers: {}", serviceInterface.getCanonicalName(), serviceTypes);
+    }
+
+    /**
+     * Concrete parameter and return types declared by the methods of the interface, sorted by class name.
+     * primitives, interfaces and abstract classes are skipped because the actual class is only known at runtime
+     */
+    public static Collection<Class<?>> collectServiceTypes(Class<?> serviceInterface) {
+        Set<Class<?>> serviceTypes = new TreeSet<>(Comparator.comparing(Class::getName));
+        for (Method method : serviceInterface.getMethods()) {
+            addIfConcrete(serviceTypes, method.getReturnType());
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                addIfConcrete(serviceTypes, parameterType);
+            }
+        }
+        return serviceTypes;
+    }
+
+    private static void addIfConcrete(Set<Class<?>> serviceTypes, Class<?> type) {
+        Class<?> componentType = type;
+        while (componentType.isArray()) {
+            componentType = componentType.getComponentType();
+        }
+        if (componentType.isPrimitive() || componentType == Object.class) {
+            if (type.isArray()) {
+                serviceTypes.add(type);
+            }
+            return;
+        }
+        if (componentType.isInterface() || Modifier.isAbstract(componentType.getModifiers())) {
+            return;
+        }
+        serviceTypes.add(type);
+        if (type != componentType) {
+            serviceTypes.add(componentType);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.quan.serialize.hessian;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.SerializerFactory;
+import com.quan.exception.SerializeException;
+import com.quan.remoting.dto.RpcRequest;
+import com.quan.remoting.dto.RpcResponse;
+import com.quan.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * Hessian 2.0 serialization. Compared with {@link HessianSerializer} it has a more compact encoding,
+ * shares one pre-warmed {@link SerializerFactory} and reuses the streams of the current thread.
+ *
+ * @author Quan
+ * @createTime 2026/10/18 17:05
+ */
+@Slf4j
+public class Hessian2Serializer implements Serializer {
+
+    private static final int BUFFER_SIZE = 1024;
+    /**
+     * the byte array stream keeps its capacity after reset, do not keep it if it grew larger than this
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * SerializerFactory caches the (de)serializer of each class, it is thread safe and shared by all threads
+     */
+    private final SerializerFactory serializerFactory = new SerializerFactory();
+    private final ThreadLocal<Hessian2Streams> streams = ThreadLocal.withInitial(Hessian2Streams::new);
+
+    public Hessian2Serializer() {
+        warmUp(RpcRequest.class);
+        warmUp(RpcResponse.class);
+    }
+
+    @Override
+    public byte[] serialize(Object obj) {
+        Hessian2Streams s = streams.get();
+        try {
+            // object -> byte
+            writeObject(s.output, s.bytes, obj);
+            byte[] bytes = s.bytes.toByteArray();
+            if (bytes.length > MAX_POOLED_BUFFER_SIZE) {
+                s.bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+            }
+            return bytes;
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            s.bytes.reset();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return readObject(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        try {
+            // object -> ByteBuf
+            writeObject(streams.get().output, new ByteBufOutputStream(out), obj);
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        return readObject(new ByteBufInputStream(in), clazz);
+    }
+
+    @Override
+    public void registerServiceTypes(Collection<Class<?>> serviceTypes) {
+        for (Class<?> serviceType : serviceTypes) {
+            warmUp(serviceType);
+        }
+    }
+
+    private void writeObject(Hessian2Output output, OutputStream os, Object obj) throws Exception {
+        output.init(os);
+        try {
+            output.writeObject(obj);
+            output.flush();
+        } finally {
+            // 不持有调用方的流
+            output.init(null);
+        }
+    }
+
+    private <T> T readObject(InputStream is, Class<T> clazz) {
+        Hessian2Streams s = streams.get();
+        Hessian2Input input = s.input;
+        input.init(is);
+        try {
+            // byte -> object
+            Object o = input.readObject();
+            return clazz.cast(o);
+        } catch (Exception e) {
+            // init() 不清空内部的读缓冲，读到一半失败时缓冲中剩下的字节会被当成下一条消息的开头，换一个新的
+            s.input = s.newInput();
+            throw new SerializeException("Deserialization failed");
+        } finally {
+            input.init(null);
+        }
+    }
+
+    /**
+     * Look up the (de)serializer of the class once so that it is cached by the factory before the first call
+     */
+    private void warmUp(Class<?> clazz) {
+        try {
+            serializerFactory.getSerializer(clazz);
+            serializerFactory.getDeserializer(clazz);
+        } catch (Exception e) {
+            log.warn("Warm up hessian serializer for [{}] failed", clazz.getName(), e);
+        }
+    }
+
+    /**
+     * Hessian2Output / Hessian2Input keep an internal buffer and reference tables, they can be reused after init.
+     * Hessian2Input.init() does not clear the read buffer, the input is replaced after a failed read
+     */
+    private final class Hessian2Streams {
+        private final Hessian2Output output = new Hessian2Output();
+        private Hessian2Input input = newInput();
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+
+        private Hessian2Streams() {
+            output.setSerializerFactory(serializerFactory);
+        }
+
+        private Hessian2Input newInput() {
+            Hessian2Input hessian2Input = new Hessian2Input();
+            hessian2Input.setSerializerFactory(serializerFactory);
+            return hessian2Input;
+        }
+    }
+}
@@ -5,6 +5,9 @@ import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 import com.quan.exception.SerializeException;
 import com.quan.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -45,4 +48,29 @@ public class HessianSerializer implements Serializer {
         }
 
     }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        try {
+            HessianOutput hessianOutput = new HessianOutput(new ByteBufOutputStream(out));
+            // object -> ByteBuf
+            hessianOutput.writeObject(obj);
+            hessianOutput.flush();
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        try {
+            HessianInput hessianInput = new HessianInput(new ByteBufInputStream(in));
+            // ByteBuf -> object
+            Object o = hessianInput.readObject();
+
+            return clazz.cast(o);
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed");
+        }
+    }
 }
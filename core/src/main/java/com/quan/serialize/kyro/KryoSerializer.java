@@ -1,19 +1,31 @@
 package com.quan.serialize.kyro;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
 import com.quan.exception.SerializeException;
-import com.quan.extension.SPI;
 import com.quan.remoting.dto.RpcRequest;
 import com.quan.remoting.dto.RpcResponse;
 import com.quan.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Description:
@@ -24,46 +36,245 @@ import java.util.concurrent.ThreadLocalRandom;
 @Slf4j
 public class KryoSerializer implements Serializer {
 
+    /**
+     * 池中最多保留的 Kryo 实例数，池空时临时创建，池满时直接丢弃
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int BUFFER_SIZE = 4096;
+    /**
+     * 序列化大对象后 Output 缓冲会扩容，超过该大小的缓冲不放回池中，避免长期占用内存
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    /**
+     * 框架类型使用固定的注册 ID，客户端和服务端保持一致，序列化时只写 ID 不写类名
+     */
+    private static final Class<?>[] FRAMEWORK_TYPES = {
+            RpcRequest.class, RpcResponse.class, Object[].class, Class.class, Class[].class,
+            ArrayList.class, HashMap.class, Date.class
+    };
+    private static final int FRAMEWORK_TYPE_ID_BASE = 100;
+    /**
+     * 服务接口类型的注册 ID 由类名哈希得到，与注册顺序无关，客户端和服务端各自注册后结果相同；
+     * ID 冲突的两个类型都不再按 ID 注册（按类名序列化），读到冲突的 ID 时反序列化失败
+     */
+    private static final int SERVICE_TYPE_ID_BASE = 1024;
+    private static final int SERVICE_TYPE_ID_RANGE = 1 << 20;
+
     /*
-        Kryo不是线程安全的，所以需要使用ThreadLocal来线程隔离
+        Kryo不是线程安全的，所以每个线程从池中借出独占的 Kryo 以及配套的 Output/Input
      */
-    private final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        kryo.register(RpcResponse.class);
-        kryo.register(RpcRequest.class);
-        return kryo;
-    });
+    private final BlockingQueue<KryoHolder> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final List<Class<?>> serviceTypes = new CopyOnWriteArrayList<>();
+    private final Map<Class<?>, Integer> serviceTypeIds = new ConcurrentHashMap<>();
+    private final Map<Integer, Class<?>> registeredIds = new ConcurrentHashMap<>();
+    /**
+     * 发生过冲突的注册 ID，对端可能用它表示另一个类型，读到时无法确定是哪个类型
+     */
+    private final Set<Integer> conflictingIds = ConcurrentHashMap.newKeySet();
+    private final Set<Class<?>> conflictingTypes = ConcurrentHashMap.newKeySet();
+    /**
+     * 发现冲突时加一，池中已经按 ID 注册了冲突类型的 Kryo 借出时重建
+     */
+    private volatile int generation;
 
     @Override
     public byte[] serialize(Object obj) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            Output output = new Output(byteArrayOutputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-
+        KryoHolder holder = borrow();
+        try {
             // Object -> byte
-            kryo.writeObject(output, obj);
-
-            kryoThreadLocal.remove();  // 用完后移除
-            return output.toBytes();
-
-        } catch (IOException e) {
+            holder.kryo.writeObject(holder.output, obj);
+            return holder.output.toBytes();
+        } catch (Exception e) {
             throw new SerializeException("Serialization failed");
+        } finally {
+            release(holder);
         }
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-             Input input = new Input(byteArrayInputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-
+        KryoHolder holder = borrow();
+        try {
+            holder.input.setBuffer(bytes);
             // byte->Object:从byte数组中反序列化出对对象
-            Object o = kryo.readObject(input, clazz);
-            kryoThreadLocal.remove();
+            Object o = holder.kryo.readObject(holder.input, clazz);
             return clazz.cast(o);
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed");
+        } finally {
+            release(holder);
+        }
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        KryoHolder holder = borrow();
+        try {
+            // 先写入复用的 Output 缓冲，再一次性拷贝到 ByteBuf
+            holder.kryo.writeObject(holder.output, obj);
+            out.writeBytes(holder.output.getBuffer(), 0, holder.output.position());
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            release(holder);
+        }
+    }
 
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        KryoHolder holder = borrow();
+        try {
+            Object o;
+            if (in.hasArray()) {
+                // 堆内存直接读取底层数组，不做拷贝
+                int offset = in.arrayOffset() + in.readerIndex();
+                holder.input.setBuffer(in.array(), offset, in.readableBytes());
+                o = holder.kryo.readObject(holder.input, clazz);
+                in.skipBytes(holder.input.position() - offset);
+            } else {
+                holder.streamInput.setInputStream(new ByteBufInputStream(in));
+                o = holder.kryo.readObject(holder.streamInput, clazz);
+            }
+            return clazz.cast(o);
         } catch (Exception e) {
             throw new SerializeException("Deserialization failed");
+        } finally {
+            release(holder);
+        }
+    }
+
+    /**
+     * Two types with the same registration id are both written with their class names instead of the id.
+     * Both sides register every type of a service they use, a type written as an id is always registered on the reading
+     * side too, so a collision is found on the side that has both types. That side can not tell which of the two types
+     * a peer means by the id, reading it fails instead of silently reading the bytes of one type as the other.
+     * Only kryo is affected, the other serializers and the types without a collision keep working
+     */
+    @Override
+    public synchronized void registerServiceTypes(Collection<Class<?>> types) {
+        for (Class<?> type : types) {
+            if (serviceTypes.contains(type) || conflictingTypes.contains(type) || isFrameworkType(type)) {
+                continue;
+            }
+            int id = SERVICE_TYPE_ID_BASE + ((type.getName().hashCode() & Integer.MAX_VALUE) % SERVICE_TYPE_ID_RANGE);
+            Class<?> existing = registeredIds.putIfAbsent(id, type);
+            if (existing != null) {
+                conflictingIds.add(id);
+                conflictingTypes.add(type);
+                if (conflictingTypes.add(existing)) {
+                    generation++;
+                }
+                log.error("Kryo registration id [{}] of [{}] conflicts with [{}], kryo can not read the id, "
+                        + "use another serializer for the services of these types", id, type.getName(), existing.getName());
+                continue;
+            }
+            serviceTypeIds.put(type, id);
+            serviceTypes.add(type);
+        }
+    }
+
+    private KryoHolder borrow() {
+        KryoHolder holder = pool.poll();
+        if (holder == null) {
+            holder = new KryoHolder(createKryo());
+        }
+        // 池中的 Kryo 可能创建于某些服务注册之前，借出时补齐
+        holder.registerServiceTypes();
+        return holder;
+    }
+
+    private void release(KryoHolder holder) {
+        if (holder.reset()) {
+            pool.offer(holder);
+        }
+    }
+
+    private Kryo createKryo() {
+        Kryo kryo = new Kryo(new ServiceTypeClassResolver(), new MapReferenceResolver());
+        for (int i = 0; i < FRAMEWORK_TYPES.length; i++) {
+            kryo.register(FRAMEWORK_TYPES[i], FRAMEWORK_TYPE_ID_BASE + i);
+        }
+        return kryo;
+    }
+
+    private boolean isFrameworkType(Class<?> type) {
+        for (Class<?> frameworkType : FRAMEWORK_TYPES) {
+            if (frameworkType == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读到发生过冲突的注册 ID 时失败
+     */
+    private final class ServiceTypeClassResolver extends DefaultClassResolver {
+        @Override
+        public Registration readClass(Input input) {
+            Registration registration = super.readClass(input);
+            if (registration != null && conflictingIds.contains(registration.getId())) {
+                throw new KryoException("Kryo registration id [" + registration.getId() + "] is ambiguous");
+            }
+            return registration;
+        }
+    }
+
+    /**
+     * 一个 Kryo 实例以及它独占的读写缓冲
+     */
+    private final class KryoHolder {
+        private Kryo kryo;
+        private final Output output = new Output(BUFFER_SIZE, -1);
+        private final Input input = new Input();
+        private final Input streamInput = new Input(BUFFER_SIZE);
+        /**
+         * 已经注册到该 Kryo 的服务类型数量，serviceTypes 只追加不删除
+         */
+        private int registeredServiceTypes;
+        private int kryoGeneration = generation;
+
+        private KryoHolder(Kryo kryo) {
+            this.kryo = kryo;
+        }
+
+        private void registerServiceTypes() {
+            if (kryoGeneration != generation) {
+                kryoGeneration = generation;
+                kryo = createKryo();
+                registeredServiceTypes = 0;
+            }
+            int size = serviceTypes.size();
+            for (; registeredServiceTypes < size; registeredServiceTypes++) {
+                Class<?> type = serviceTypes.get(registeredServiceTypes);
+                if (conflictingTypes.contains(type)) {
+                    continue;
+                }
+                Registration registration = kryo.getClassResolver().getRegistration(type);
+                if (registration != null && registration.getId() == DefaultClassResolver.NAME) {
+                    // 注册前已经按类名隐式注册过，ClassResolver 内部有缓存无法覆盖，直接重建 Kryo
+                    kryo = createKryo();
+                    registeredServiceTypes = 0;
+                    registerServiceTypes();
+                    return;
+                }
+                // Kryo 默认注册过的类型（String、基本类型包装类等）保持原有 ID
+                if (registration == null) {
+                    kryo.register(type, serviceTypeIds.get(type));
+                }
+            }
+        }
+
+        /**
+         * @return false if the buffers grew too large to be kept in the pool
+         */
+        private boolean reset() {
+            output.clear();
+            input.setBuffer(EMPTY_BUFFER);
+            streamInput.setInputStream(null);
+            return output.getBuffer().length <= MAX_POOLED_BUFFER_SIZE;
         }
     }
 }
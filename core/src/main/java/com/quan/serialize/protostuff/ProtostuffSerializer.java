@@ -1,31 +1,60 @@
 package com.quan.serialize.protostuff;
 
+import com.quan.exception.SerializeException;
+import com.quan.remoting.dto.RpcRequest;
+import com.quan.remoting.dto.RpcResponse;
 import com.quan.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author TangMinXuan
  * @createTime 2020年11月09日 20:13
  */
+@Slf4j
 public class ProtostuffSerializer implements Serializer {
 
     /**
-     * Avoid re applying buffer space every time serialization
+     * Avoid re applying buffer space every time serialization.
+     * LinkedBuffer is not thread safe, the serializer is called from both the netty event loops and the
+     * service handler threads, so every thread owns its buffer
      */
-    private static final LinkedBuffer BUFFER = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(
+            () -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+
+    /**
+     * classes whose schema has been built, see {@link #warmUp(Class)}
+     */
+    private final Set<Class<?>> warmedTypes = ConcurrentHashMap.newKeySet();
+
+    public ProtostuffSerializer() {
+        warmUp(RpcRequest.class);
+        warmUp(RpcResponse.class);
+    }
 
     @Override
     public byte[] serialize(Object obj) {
         Class<?> clazz = obj.getClass();
         Schema schema = RuntimeSchema.getSchema(clazz);
+        LinkedBuffer buffer = BUFFER.get();
         byte[] bytes;
         try {
-            bytes = ProtostuffIOUtil.toByteArray(obj, schema, BUFFER);
+            bytes = ProtostuffIOUtil.toByteArray(obj, schema, buffer);
         } finally {
-            BUFFER.clear();
+            buffer.clear();
         }
         return bytes;
     }
@@ -37,4 +66,71 @@ public class ProtostuffSerializer implements Serializer {
         ProtostuffIOUtil.mergeFrom(bytes, obj, schema);
         return obj;
     }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Class<?> clazz = obj.getClass();
+        Schema schema = RuntimeSchema.getSchema(clazz);
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        Schema<T> schema = RuntimeSchema.getSchema(clazz);
+        T obj = schema.newMessage();
+        if (in.hasArray()) {
+            // 堆内存直接读取底层数组，不做拷贝
+            ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), obj, schema);
+            in.skipBytes(in.readableBytes());
+            return obj;
+        }
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 直接内存通过流读取，使用当前线程的 LinkedBuffer 作为读缓冲
+            ProtostuffIOUtil.mergeFrom(new ByteBufInputStream(in), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed");
+        } finally {
+            buffer.clear();
+        }
+        return obj;
+    }
+
+    @Override
+    public void registerServiceTypes(Collection<Class<?>> serviceTypes) {
+        for (Class<?> serviceType : serviceTypes) {
+            warmUp(serviceType);
+        }
+        log.info("Protostuff schema warmed up for [{}] classes", warmedTypes.size());
+    }
+
+    /**
+     * Build the runtime schema of the class and of its field types at boot,
+     * so the first requests do not pay for the reflection
+     */
+    private void warmUp(Class<?> clazz) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        if (clazz.isPrimitive() || clazz.isInterface() || clazz.isEnum()
+                || Modifier.isAbstract(clazz.getModifiers()) || clazz.getName().startsWith("java.")
+                || !warmedTypes.add(clazz)) {
+            return;
+        }
+        RuntimeSchema.getSchema(clazz);
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                    warmUp(field.getType());
+                }
+            }
+        }
+    }
 }
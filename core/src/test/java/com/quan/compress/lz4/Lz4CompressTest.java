@@ -0,0 +1,125 @@
+package com.quan.compress.lz4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Description: LZ4 的往返，以及对端发来的长度与内容不一致、被截断或伪造的数据
+ * date: 2026/10/19 上午 3:40
+ *
+ * @author Quan
+ */
+class Lz4CompressTest {
+
+    private static final int[] SIZES = {0, 1, 100, 1023, 1024, Short.MAX_VALUE, Short.MAX_VALUE + 1, 40 * 1024, 1024 * 1024 + 7};
+
+    private final Lz4Compress compress = new Lz4Compress();
+
+    @Test
+    void roundTripBytes() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            assertArrayEquals(bytes, compress.decompress(compress.compress(bytes)), "size " + size);
+        }
+    }
+
+    @Test
+    void roundTripDirectByteBuf() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            ByteBuf compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+            ByteBuf decompressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+            try {
+                compress.compress(Unpooled.wrappedBuffer(bytes), compressed);
+                compress.decompress(compressed, decompressed);
+                assertArrayEquals(bytes, ByteBufUtil.getBytes(decompressed), "size " + size);
+            } finally {
+                compressed.release();
+                decompressed.release();
+            }
+        }
+    }
+
+    @Test
+    void declaredLengthLargerThanTheContentIsRejected() {
+        byte[] compressed = compress.compress(payload(1000));
+        compressed[3] = (byte) 0xFF;
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(compressed));
+        assertThrows(RuntimeException.class, () -> decompress(compressed));
+    }
+
+    @Test
+    void declaredLengthSmallerThanTheContentIsRejected() {
+        byte[] compressed = compress.compress(payload(1000));
+        compressed[3] = (byte) 100;
+        compressed[2] = 0;
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(compressed));
+        assertThrows(RuntimeException.class, () -> decompress(compressed));
+    }
+
+    @Test
+    void truncatedInputIsRejected() {
+        byte[] compressed = compress.compress(payload(1000));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(truncated));
+        assertThrows(RuntimeException.class, () -> decompress(truncated));
+    }
+
+    @Test
+    void trailingBytesAreRejected() {
+        byte[] compressed = compress.compress(payload(1000));
+        // fast 解压器解压出声明的长度就停下，不检查后面多出来的数据
+        byte[] padded = Arrays.copyOf(compressed, compressed.length + 16);
+        Arrays.fill(padded, compressed.length, padded.length, (byte) 0x7F);
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(padded));
+        assertThrows(RuntimeException.class, () -> decompress(padded));
+    }
+
+    @Test
+    void garbageIsRejected() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            byte[] garbage = new byte[64];
+            random.nextBytes(garbage);
+            // 声明的长度合法，内容是随机字节
+            garbage[0] = 0;
+            garbage[1] = 0;
+            garbage[2] = 4;
+            garbage[3] = 0;
+            assertThrows(RuntimeException.class, () -> compress.decompress(garbage));
+        }
+    }
+
+    private void decompress(byte[] bytes) {
+        ByteBuf in = PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length);
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            in.writeBytes(bytes);
+            compress.decompress(in, out);
+        } finally {
+            in.release();
+            out.release();
+        }
+    }
+
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ("abcdefgh".charAt(i % 8) + i / 4096);
+        }
+        return bytes;
+    }
+}
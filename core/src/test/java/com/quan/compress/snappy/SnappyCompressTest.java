@@ -0,0 +1,67 @@
+package com.quan.compress.snappy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Description: Snappy 分块压缩的往返，包括超过一块（32767 字节）的消息体
+ * date: 2026/10/19 上午 3:20
+ *
+ * @author Quan
+ */
+class SnappyCompressTest {
+
+    private static final int[] SIZES = {0, 1, 100, 1023, 1024, Short.MAX_VALUE, Short.MAX_VALUE + 1, 40 * 1024, 1024 * 1024 + 7};
+
+    private final SnappyCompress compress = new SnappyCompress();
+
+    @Test
+    void roundTripBytes() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            assertArrayEquals(bytes, compress.decompress(compress.compress(bytes)), "size " + size);
+        }
+    }
+
+    @Test
+    void roundTripByteBuf() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            ByteBuf compressed = Unpooled.buffer();
+            compress.compress(Unpooled.wrappedBuffer(bytes), compressed);
+            ByteBuf decompressed = Unpooled.buffer();
+
+            compress.decompress(compressed, decompressed);
+
+            assertArrayEquals(bytes, ByteBufUtil.getBytes(decompressed), "size " + size);
+        }
+    }
+
+    @Test
+    void blockLengthBeyondTheInputIsRejected() {
+        byte[] compressed = compress.compress(payload(100));
+        compressed[2]++;
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(compressed));
+    }
+
+    /**
+     * 一半重复文本一半随机字节，既有可压缩的部分也有不可压缩的部分
+     */
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        Random random = new Random(size);
+        byte[] text = "{\"name\":\"quan\",\"values\":[1,2,3]}".getBytes();
+        for (int i = 0; i < size; i++) {
+            bytes[i] = i % 1024 < 512 ? text[i % text.length] : (byte) random.nextInt();
+        }
+        return bytes;
+    }
+}
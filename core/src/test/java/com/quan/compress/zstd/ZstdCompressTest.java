@@ -0,0 +1,88 @@
+package com.quan.compress.zstd;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Description: Zstd 的往返，byte[]、堆内 ByteBuf 和堆外 ByteBuf 三条路径，包括压缩阈值附近和超过 32KB 的消息体
+ * date: 2026/10/19 上午 4:10
+ *
+ * @author Quan
+ */
+class ZstdCompressTest {
+
+    private static final int[] SIZES = {0, 1, 1023, 1024, Short.MAX_VALUE, Short.MAX_VALUE + 1, 40 * 1024, 1024 * 1024 + 7};
+
+    private final ZstdCompress compress = new ZstdCompress();
+
+    @Test
+    void roundTripBytes() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            assertArrayEquals(bytes, compress.decompress(compress.compress(bytes)), "size " + size);
+        }
+    }
+
+    @Test
+    void roundTripHeapByteBuf() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            ByteBuf compressed = Unpooled.buffer();
+            compress.compress(Unpooled.wrappedBuffer(bytes), compressed);
+            ByteBuf decompressed = Unpooled.buffer();
+
+            compress.decompress(compressed, decompressed);
+
+            assertArrayEquals(bytes, ByteBufUtil.getBytes(decompressed), "size " + size);
+        }
+    }
+
+    @Test
+    void roundTripDirectByteBuf() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            ByteBuf in = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(bytes);
+            ByteBuf compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+            ByteBuf decompressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+            try {
+                compress.compress(in, compressed);
+                compress.decompress(compressed, decompressed);
+                assertArrayEquals(bytes, ByteBufUtil.getBytes(decompressed), "size " + size);
+            } finally {
+                in.release();
+                compressed.release();
+                decompressed.release();
+            }
+        }
+    }
+
+    @Test
+    void truncatedInputIsRejected() {
+        byte[] compressed = compress.compress(payload(40 * 1024));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(truncated));
+    }
+
+    /**
+     * 一半重复文本一半随机字节，既有可压缩的部分也有不可压缩的部分
+     */
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        Random random = new Random(size);
+        byte[] text = "{\"name\":\"quan\",\"values\":[1,2,3]}".getBytes();
+        for (int i = 0; i < size; i++) {
+            bytes[i] = i % 1024 < 512 ? text[i % text.length] : (byte) random.nextInt();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,129 @@
+package com.quan.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 带字典的 Zstd 的往返，字典 ID 写在帧头中；没有字典的帧按普通 Zstd 解压
+ * date: 2026/10/19 上午 4:20
+ *
+ * @author Quan
+ */
+class ZstdDictionaryCompressTest {
+
+    private static final int[] SIZES = {0, 1, 100, 1023, 1024, Short.MAX_VALUE, Short.MAX_VALUE + 1, 40 * 1024, 1024 * 1024 + 7};
+
+    private static ZstdDictionary dictionary;
+
+    private final ZstdDictionaryCompress compress = new ZstdDictionaryCompress();
+
+    @BeforeAll
+    static void trainDictionary() {
+        dictionary = ZstdDictionaryManager.getInstance().train("ZstdDictionaryCompressTest", samples(2000, 0));
+        assertNotNull(dictionary);
+    }
+
+    @Test
+    void roundTripHeapByteBuf() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            ByteBuf compressed = Unpooled.buffer();
+            compress.compress(Unpooled.wrappedBuffer(bytes), compressed, dictionary.getId());
+            assertEquals(dictionary.getId(), Zstd.getDictIdFromFrame(ByteBufUtil.getBytes(compressed)), "size " + size);
+            ByteBuf decompressed = Unpooled.buffer();
+
+            compress.decompress(compressed, decompressed);
+
+            assertArrayEquals(bytes, ByteBufUtil.getBytes(decompressed), "size " + size);
+        }
+    }
+
+    @Test
+    void roundTripDirectByteBuf() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            ByteBuf in = PooledByteBufAllocator.DEFAULT.directBuffer(size).writeBytes(bytes);
+            ByteBuf compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+            ByteBuf decompressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+            try {
+                compress.compress(in, compressed, dictionary.getId());
+                compress.decompress(compressed, decompressed);
+                assertArrayEquals(bytes, ByteBufUtil.getBytes(decompressed), "size " + size);
+            } finally {
+                in.release();
+                compressed.release();
+                decompressed.release();
+            }
+        }
+    }
+
+    @Test
+    void smallMessageIsSmallerWithTheDictionary() {
+        byte[] bytes = samples(1, 5000).get(0);
+        ByteBuf withDictionary = Unpooled.buffer();
+        compress.compress(Unpooled.wrappedBuffer(bytes), withDictionary, dictionary.getId());
+
+        assertTrue(withDictionary.readableBytes() < compress.compress(bytes).length,
+                withDictionary.readableBytes() + " bytes with the dictionary");
+    }
+
+    @Test
+    void frameWithoutDictionaryIsDecompressedAsPlainZstd() {
+        for (int size : SIZES) {
+            byte[] bytes = payload(size);
+            assertArrayEquals(bytes, compress.decompress(compress.compress(bytes)), "size " + size);
+        }
+    }
+
+    @Test
+    void unknownDictionaryIsRejected() {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 4 * 1024);
+        for (byte[] sample : samples(2000, 10000)) {
+            trainer.addSample(sample);
+        }
+        byte[] content = trainer.trainSamples();
+        byte[] compressed = Zstd.compress(payload(1000), new ZstdDictCompress(content, ZstdCompress.COMPRESSION_LEVEL));
+
+        assertThrows(RuntimeException.class, () -> compress.decompress(compressed));
+        assertThrows(RuntimeException.class, () -> compress.compress(Unpooled.buffer(), Unpooled.buffer(), 0));
+    }
+
+    /**
+     * 结构相同、字段值不同的小报文，适合训练字典
+     */
+    private static List<byte[]> samples(int count, int from) {
+        List<byte[]> samples = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            samples.add(("{\"interfaceName\":\"com.quan.HelloService\",\"methodName\":\"hello\",\"requestId\":\"" + i
+                    + "\",\"parameters\":[{\"message\":\"message-" + i % 97 + "\",\"description\":\"description-" + i % 13
+                    + "\"}],\"group\":\"test1\",\"version\":\"version1\"}").getBytes(StandardCharsets.UTF_8));
+        }
+        return samples;
+    }
+
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        byte[] text = samples(1, size).get(0);
+        for (int i = 0; i < size; i++) {
+            bytes[i] = text[i % text.length];
+        }
+        return bytes;
+    }
+}
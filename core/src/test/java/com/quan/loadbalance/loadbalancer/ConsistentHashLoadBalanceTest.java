@@ -0,0 +1,165 @@
+package com.quan.loadbalance.loadbalancer;
+
+import com.quan.remoting.dto.RpcRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 一致性哈希的路由：与地址列表的顺序无关，增减地址时只有相关的键换地址
+ * date: 2026/10/19 上午 3:00
+ *
+ * @author Quan
+ */
+class ConsistentHashLoadBalanceTest {
+
+    private static final int KEYS = 1000;
+    private static final List<String> ADDRESSES = Arrays.asList(
+            "10.0.0.1:9998", "10.0.0.2:9998", "10.0.0.3:9998", "10.0.0.4:9998", "10.0.0.5:9998");
+
+    @Test
+    void sameKeySelectsSameAddressRegardlessOfListOrder() {
+        List<String> shuffled = new ArrayList<>(ADDRESSES);
+        Collections.shuffle(shuffled, new Random(1));
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+
+        Map<String, String> before = route(loadBalance, ADDRESSES);
+
+        // 同一个负载均衡器换一个顺序的列表，以及新建的负载均衡器，结果都一样
+        assertEquals(before, route(loadBalance, shuffled));
+        assertEquals(before, route(new ConsistentHashLoadBalance(), shuffled));
+    }
+
+    @Test
+    void keysAreSpreadOverAllAddresses() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String address : route(new ConsistentHashLoadBalance(), ADDRESSES).values()) {
+            counts.merge(address, 1, Integer::sum);
+        }
+
+        assertEquals(ADDRESSES.size(), counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / ADDRESSES.size() / 2, "unbalanced: " + counts);
+        }
+    }
+
+    @Test
+    void removingAddressOnlyMovesItsKeys() {
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        Map<String, String> before = route(loadBalance, ADDRESSES);
+        String removed = ADDRESSES.get(2);
+        List<String> remaining = new ArrayList<>(ADDRESSES);
+        remaining.remove(removed);
+
+        Map<String, String> after = route(loadBalance, remaining);
+
+        int moved = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String address = after.get(entry.getKey());
+            if (entry.getValue().equals(removed)) {
+                assertNotEquals(removed, address);
+                moved++;
+            } else {
+                assertEquals(entry.getValue(), address, entry.getKey());
+            }
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    void addingAddressOnlyMovesKeysToIt() {
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        Map<String, String> before = route(loadBalance, ADDRESSES);
+        String added = "10.0.0.6:9998";
+        List<String> more = new ArrayList<>(ADDRESSES);
+        more.add(added);
+
+        Map<String, String> after = route(loadBalance, more);
+
+        int moved = 0;
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                assertEquals(added, entry.getValue());
+                moved++;
+            }
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    void duplicateAddressesRouteLikeTheDistinctAddresses() {
+        List<String> duplicated = new ArrayList<>(ADDRESSES);
+        duplicated.add(ADDRESSES.get(0));
+        duplicated.add(ADDRESSES.get(3));
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+
+        Map<String, String> expected = route(loadBalance, ADDRESSES);
+
+        assertEquals(expected, route(loadBalance, duplicated));
+        assertEquals(expected, route(loadBalance, new ArrayList<>(ADDRESSES)));
+    }
+
+    @Test
+    void sameSizeListWithDifferentAddressesRebuildsTheRing() {
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        route(loadBalance, ADDRESSES.subList(0, 2));
+
+        // 长度相同，地址都在旧的环上，但少了一个地址
+        List<String> sameAddressTwice = Arrays.asList(ADDRESSES.get(0), ADDRESSES.get(0));
+        for (String address : route(loadBalance, sameAddressTwice).values()) {
+            assertEquals(ADDRESSES.get(0), address);
+        }
+    }
+
+    @Test
+    void routingKeyTakesPrecedenceOverArgument() {
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        String expected = loadBalance.selectServiceAddress(ADDRESSES, request("user-42", "ignored-0"));
+
+        for (int i = 1; i < 50; i++) {
+            assertEquals(expected, loadBalance.selectServiceAddress(ADDRESSES, request("user-42", "ignored-" + i)));
+        }
+        // 没有路由键时用第一个参数
+        assertEquals(expected, loadBalance.selectServiceAddress(ADDRESSES, request(null, "user-42")));
+    }
+
+    @Test
+    void onlyTheConfiguredArgumentIsHashed() {
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        String expected = loadBalance.selectServiceAddress(ADDRESSES, request(null, "key", 0));
+
+        for (int i = 1; i < 50; i++) {
+            assertEquals(expected, loadBalance.selectServiceAddress(ADDRESSES, request(null, "key", i)));
+        }
+    }
+
+    private static Map<String, String> route(ConsistentHashLoadBalance loadBalance, List<String> addresses) {
+        Map<String, String> routes = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            routes.put(key, loadBalance.selectServiceAddress(addresses, request(key)));
+        }
+        return routes;
+    }
+
+    private static RpcRequest request(String routingKey, Object... parameters) {
+        return RpcRequest.builder()
+                .routingKey(routingKey)
+                .interfaceName("com.quan.HelloService")
+                .methodName("hello")
+                .parameters(parameters)
+                .group("test1")
+                .version("version1")
+                .build();
+    }
+}
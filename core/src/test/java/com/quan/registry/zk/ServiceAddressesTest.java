@@ -0,0 +1,85 @@
+package com.quan.registry.zk;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 服务地址的增减，每次变化复制出新的实例，旧的实例不受影响
+ * date: 2026/10/19 上午 3:10
+ *
+ * @author Quan
+ */
+class ServiceAddressesTest {
+
+    @Test
+    void addParsesTheAddress() {
+        ServiceAddresses addresses = ServiceAddresses.EMPTY.add("127.0.0.1:9998").add("127.0.0.1:9999");
+
+        assertFalse(addresses.isEmpty());
+        assertEquals(Arrays.asList("127.0.0.1:9998", "127.0.0.1:9999"), addresses.getServiceUrlList());
+        assertEquals(new InetSocketAddress("127.0.0.1", 9998), addresses.get("127.0.0.1:9998"));
+        assertEquals(new InetSocketAddress("127.0.0.1", 9999), addresses.get("127.0.0.1:9999"));
+        assertNull(addresses.get("127.0.0.1:10000"));
+    }
+
+    @Test
+    void addExistingAddressReturnsTheSameInstance() {
+        ServiceAddresses addresses = ServiceAddresses.EMPTY.add("127.0.0.1:9998");
+
+        assertSame(addresses, addresses.add("127.0.0.1:9998"));
+    }
+
+    @Test
+    void removeLeavesTheOtherAddresses() {
+        ServiceAddresses addresses = ServiceAddresses.EMPTY
+                .add("127.0.0.1:9997").add("127.0.0.1:9998").add("127.0.0.1:9999");
+
+        ServiceAddresses removed = addresses.remove("127.0.0.1:9998");
+
+        assertEquals(Arrays.asList("127.0.0.1:9997", "127.0.0.1:9999"), removed.getServiceUrlList());
+        assertNull(removed.get("127.0.0.1:9998"));
+        assertEquals(new InetSocketAddress("127.0.0.1", 9999), removed.get("127.0.0.1:9999"));
+        assertTrue(removed.remove("127.0.0.1:9997").remove("127.0.0.1:9999").isEmpty());
+    }
+
+    @Test
+    void removeMissingAddressReturnsTheSameInstance() {
+        ServiceAddresses addresses = ServiceAddresses.EMPTY.add("127.0.0.1:9998");
+
+        assertSame(addresses, addresses.remove("127.0.0.1:9999"));
+        assertSame(ServiceAddresses.EMPTY, ServiceAddresses.EMPTY.remove("127.0.0.1:9998"));
+    }
+
+    @Test
+    void previousInstanceIsNotChanged() {
+        ServiceAddresses first = ServiceAddresses.EMPTY.add("127.0.0.1:9998");
+        List<String> urls = first.getServiceUrlList();
+
+        ServiceAddresses second = first.add("127.0.0.1:9999").remove("127.0.0.1:9998");
+
+        // 负载均衡可能还在用旧的列表
+        assertEquals(Collections.singletonList("127.0.0.1:9998"), urls);
+        assertEquals(new InetSocketAddress("127.0.0.1", 9998), first.get("127.0.0.1:9998"));
+        assertEquals(Collections.singletonList("127.0.0.1:9999"), second.getServiceUrlList());
+        assertTrue(ServiceAddresses.EMPTY.isEmpty());
+    }
+
+    @Test
+    void listIsUnmodifiable() {
+        ServiceAddresses addresses = ServiceAddresses.EMPTY.add("127.0.0.1:9998");
+
+        assertThrows(UnsupportedOperationException.class, () -> addresses.getServiceUrlList().add("127.0.0.1:9999"));
+        assertThrows(UnsupportedOperationException.class, () -> ServiceAddresses.EMPTY.getServiceUrlList().add("x:1"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.quan.remoting.transport.netty.client;
+
+import com.quan.exception.RpcException;
+import com.quan.metrics.RpcMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 并发限制的计数：获取、排队、释放和退避，使用默认配置（初始上限 20，最小 4，排队 100，最多等待 20ms）
+ * date: 2026/10/19 上午 2:50
+ *
+ * @author Quan
+ */
+class ConcurrencyLimiterTest {
+
+    private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9998);
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(address);
+
+    @AfterEach
+    void close() {
+        limiter.close();
+    }
+
+    @Test
+    void requestsOverTheLimitAreQueuedUntilRelease() {
+        List<CompletableFuture<Void>> acquired = acquire(20);
+        for (CompletableFuture<Void> future : acquired) {
+            assertTrue(future.isDone());
+        }
+        CompletableFuture<Void> queued = limiter.acquire();
+        assertFalse(queued.isDone());
+        assertEquals(20, gauge().get("inflight"));
+        assertEquals(1, gauge().get("queued"));
+
+        limiter.release(RTT_NANOS, false);
+
+        // 释放的名额直接交给排队的请求
+        assertTrue(queued.isDone());
+        assertFalse(queued.isCompletedExceptionally());
+        assertEquals(20, gauge().get("inflight"));
+        assertEquals(0, gauge().get("queued"));
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() {
+        acquire(20);
+        List<CompletableFuture<Void>> queued = acquire(100);
+        for (CompletableFuture<Void> future : queued) {
+            assertFalse(future.isDone());
+        }
+
+        CompletableFuture<Void> rejected = limiter.acquire();
+
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(e.getCause() instanceof RpcException);
+        assertEquals(100, gauge().get("queued"));
+    }
+
+    @Test
+    void queuedRequestFailsAfterMaxWait() {
+        acquire(20);
+        CompletableFuture<Void> queued = limiter.acquire();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(1, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof RpcException);
+        assertEquals(0, gauge().get("queued"));
+        // 超时的请求没有占用名额，释放已有的请求后计数归零
+        for (int i = 0; i < 20; i++) {
+            limiter.release(RTT_NANOS, false);
+        }
+        assertEquals(0, gauge().get("inflight"));
+    }
+
+    @Test
+    void droppedRequestsBackOffTheLimitDownToTheMinimum() {
+        limiter.acquire();
+        limiter.release(RTT_NANOS, true);
+        assertEquals(18, gauge().get("limit"));
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(RTT_NANOS, true);
+        }
+
+        assertEquals(4, gauge().get("limit"));
+        assertEquals(0, gauge().get("inflight"));
+    }
+
+    @Test
+    void idleOnlyWithoutInflightRequestsForTheIdleTime() {
+        limiter.acquire();
+        long later = System.nanoTime() + ConcurrencyLimiter.IDLE_NANOS + 1;
+        assertFalse(limiter.isIdle(later));
+
+        limiter.release(RTT_NANOS, false);
+
+        assertFalse(limiter.isIdle(System.nanoTime()));
+        assertTrue(limiter.isIdle(System.nanoTime() + ConcurrencyLimiter.IDLE_NANOS + 1));
+    }
+
+    @Test
+    void closeRemovesTheGauge() {
+        String name = gaugeName();
+        assertTrue(RpcMetrics.snapshot().containsKey(name));
+
+        limiter.close();
+
+        assertNull(RpcMetrics.snapshot().get(name));
+    }
+
+    private List<CompletableFuture<Void>> acquire(int n) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            futures.add(limiter.acquire());
+        }
+        return futures;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> gauge() {
+        return (Map<String, Object>) RpcMetrics.snapshot().get(gaugeName());
+    }
+
+    private String gaugeName() {
+        return "client.limit." + address.getHostString() + ":" + address.getPort();
+    }
+}
@@ -0,0 +1,200 @@
+package com.quan.remoting.transport.netty.client;
+
+import com.quan.exception.RpcException;
+import com.quan.remoting.dto.RpcRequest;
+import com.quan.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 请求表的超时、请求 ID 的分配和回绕、扩容以及连接断开时的清理
+ * date: 2026/10/19 上午 2:40
+ *
+ * @author Quan
+ */
+class UnprocessedRequestsTest {
+
+    @Test
+    void timeoutFailsFutureWithRpcException() {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        UnprocessedRequests.timeout(future, "service", 20);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RpcException);
+    }
+
+    @Test
+    void completedFutureIsNotTimedOut() throws Exception {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        UnprocessedRequests.timeout(future, "service", 50);
+        RpcResponse<Object> response = RpcResponse.success("ok", null);
+        future.complete(response);
+
+        Thread.sleep(150);
+        assertFalse(future.isCompletedExceptionally());
+        assertEquals(response, future.get());
+    }
+
+    @Test
+    void zeroTimeoutNeverFails() throws Exception {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        UnprocessedRequests.timeout(future, "service", 0);
+
+        Thread.sleep(50);
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    void responseCompletesTheRequestWithTheSameId() throws Exception {
+        UnprocessedRequests requests = new UnprocessedRequests();
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        int firstId = requests.put(request("a"), first);
+        int secondId = requests.put(request("b"), second);
+
+        requests.complete(secondId, RpcResponse.success("ok", null));
+
+        assertFalse(first.isDone());
+        // 调用方生成的 ID 补回到响应中
+        assertEquals("b", second.get().getRequestId());
+        assertEquals(1, requests.size());
+        assertNotNull(requests.remove(firstId));
+        assertNull(requests.remove(firstId));
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    void responseOfRemovedRequestIsDropped() {
+        UnprocessedRequests requests = new UnprocessedRequests();
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        int id = requests.put(request("a"), future);
+        requests.remove(id);
+
+        requests.complete(id, RpcResponse.success("late", null));
+
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    void idWrapsAroundAndSkipsZero() {
+        UnprocessedRequests requests = new UnprocessedRequests(Integer.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, requests.put(request("a"), new CompletableFuture<>()));
+        assertEquals(Integer.MIN_VALUE, requests.put(request("b"), new CompletableFuture<>()));
+
+        requests = new UnprocessedRequests(-2);
+        assertEquals(-2, requests.put(request("a"), new CompletableFuture<>()));
+        assertEquals(-1, requests.put(request("b"), new CompletableFuture<>()));
+        assertEquals(1, requests.put(request("c"), new CompletableFuture<>()));
+    }
+
+    @Test
+    void negativeIdsAreCompleted() throws Exception {
+        UnprocessedRequests requests = new UnprocessedRequests(Integer.MAX_VALUE);
+        requests.put(request("a"), new CompletableFuture<>());
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        int id = requests.put(request("b"), future);
+
+        requests.complete(id, RpcResponse.success("ok", null));
+
+        assertEquals("b", future.get().getRequestId());
+    }
+
+    @Test
+    void idOfPendingRequestIsNotReusedAfterWraparound() {
+        UnprocessedRequests requests = new UnprocessedRequests();
+        CompletableFuture<RpcResponse<Object>> slow = new CompletableFuture<>();
+        int slowId = requests.put(request("slow"), slow);
+        // 其余 63 个槽反复使用，直到 ID 的低位回到慢请求的槽
+        for (int i = 0; i < 63; i++) {
+            requests.remove(requests.put(request("fast"), new CompletableFuture<>()));
+        }
+
+        int id = requests.put(request("next"), new CompletableFuture<>());
+
+        assertEquals(slowId + 65, id);
+        requests.complete(slowId, RpcResponse.success("ok", null));
+        assertTrue(slow.isDone());
+    }
+
+    @Test
+    void growKeepsPendingRequests() throws Exception {
+        UnprocessedRequests requests = new UnprocessedRequests(Integer.MAX_VALUE - 100);
+        List<Integer> ids = new ArrayList<>();
+        List<CompletableFuture<RpcResponse<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            ids.add(requests.put(request(String.valueOf(i)), future));
+            futures.add(future);
+        }
+        Set<Integer> distinct = new HashSet<>(ids);
+        assertEquals(300, distinct.size());
+        assertEquals(300, requests.size());
+
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            requests.complete(ids.get(i), RpcResponse.success("ok", null));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(String.valueOf(i), futures.get(i).get().getRequestId());
+        }
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    void failAllFailsEveryPendingRequestAndEmptiesTheTable() {
+        UnprocessedRequests requests = new UnprocessedRequests();
+        List<CompletableFuture<RpcResponse<Object>>> futures = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            ids.add(requests.put(request(String.valueOf(i)), future));
+            futures.add(future);
+        }
+        RuntimeException cause = new RuntimeException("closed");
+
+        requests.failAll(cause);
+
+        assertEquals(0, requests.size());
+        for (CompletableFuture<RpcResponse<Object>> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertSame(cause, e.getCause());
+        }
+        for (int id : ids) {
+            assertNull(requests.remove(id));
+        }
+    }
+
+    @Test
+    void requestPutFromFailAllCallbackIsKept() {
+        UnprocessedRequests requests = new UnprocessedRequests();
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        requests.put(request("a"), future);
+        CompletableFuture<RpcResponse<Object>> retry = new CompletableFuture<>();
+        // 回调中的重试可能登记到同一张表，表要先清空再通知
+        future.whenComplete((response, cause) -> requests.put(request("retry"), retry));
+
+        requests.failAll(new RuntimeException("closed"));
+
+        assertEquals(1, requests.size());
+        assertFalse(retry.isDone());
+    }
+
+    private static RpcRequest request(String requestId) {
+        return RpcRequest.builder().requestId(requestId).interfaceName("service").methodName("method").build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.quan.remoting.transport.netty.codec;
+
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.remoting.constants.RpcConstants;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Description: 每种压缩类型经过编码器和解码器的往返：消息体在压缩阈值（rpc.compress.min-body-size，默认 1024）两侧、
+ * 32KB 两侧和超过 1MB，编码后的帧分成小块送进解码器
+ * date: 2026/10/19 上午 4:30
+ *
+ * @author Quan
+ */
+class RpcMessageCodecTest {
+
+    private static final int COMPRESS_MIN_BODY_SIZE = 1024;
+    private static final int[] BODY_SIZES = {COMPRESS_MIN_BODY_SIZE - 1, COMPRESS_MIN_BODY_SIZE,
+            Short.MAX_VALUE, Short.MAX_VALUE + 1, 40 * 1024, 1024 * 1024 + 7};
+    /**
+     * 一次送进解码器的字节数，帧被拆到多次读取中
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    @Test
+    void roundTripEveryCompressType() {
+        for (CompressTypeEnum compressType : CompressTypeEnum.values()) {
+            for (int bodySize : BODY_SIZES) {
+                String data = dataForBodySize(bodySize);
+                String name = compressType.getName() + " body " + bodySize;
+                EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+                encoder.writeOutbound(response(1, compressType, data));
+                ByteBuf frame = encoder.readOutbound();
+
+                // 低 4 位：这一帧实际使用的压缩类型，小于阈值时不压缩
+                byte expected = bodySize < COMPRESS_MIN_BODY_SIZE ? CompressTypeEnum.NONE.getCode() : compressType.getCode();
+                assertEquals(expected, frame.getByte(RpcConstants.HEAD_LENGTH - 5) & 0x0F, name);
+
+                RpcMessage decoded = decodeInChunks(frame);
+                assertEquals(1, decoded.getRequestId(), name);
+                assertEquals(compressType.getCode(), decoded.getCompress(), name);
+                assertEquals(data, ((RpcResponse<?>) decoded.getData()).getData(), name);
+            }
+        }
+    }
+
+    @Test
+    void consecutiveFramesInOneReadAreAllDecoded() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        ByteBuf frames = encoder.alloc().buffer();
+        CompressTypeEnum[] compressTypes = CompressTypeEnum.values();
+        for (int i = 0; i < compressTypes.length; i++) {
+            encoder.writeOutbound(response(i, compressTypes[i], dataForBodySize(40 * 1024)));
+            ByteBuf frame = encoder.readOutbound();
+            frames.writeBytes(frame);
+            frame.release();
+        }
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+
+        decoder.writeInbound(frames);
+
+        for (int i = 0; i < compressTypes.length; i++) {
+            RpcMessage decoded = decoder.readInbound();
+            assertEquals(i, decoded.getRequestId());
+            assertEquals(dataForBodySize(40 * 1024), ((RpcResponse<?>) decoded.getData()).getData());
+        }
+        assertNull(decoder.readInbound());
+    }
+
+    private static RpcMessage decodeInChunks(ByteBuf frame) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        while (frame.isReadable()) {
+            ByteBuf chunk = frame.readRetainedSlice(Math.min(CHUNK_SIZE, frame.readableBytes()));
+            decoder.writeInbound(chunk);
+        }
+        frame.release();
+        RpcMessage decoded = decoder.readInbound();
+        assertNull(decoder.readInbound());
+        return decoded;
+    }
+
+    /**
+     * @return a string whose response serializes to exactly {@code bodySize} bytes
+     */
+    private static String dataForBodySize(int bodySize) {
+        int length = bodySize;
+        for (int i = 0; i < 10; i++) {
+            String data = data(length);
+            int difference = bodySize(data) - bodySize;
+            if (difference == 0) {
+                return data;
+            }
+            length -= difference;
+        }
+        throw new IllegalStateException("no data serializes to " + bodySize + " bytes");
+    }
+
+    private static int bodySize(String data) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        encoder.writeOutbound(response(0, CompressTypeEnum.NONE, data));
+        ByteBuf frame = encoder.readOutbound();
+        int bodySize = frame.readableBytes() - RpcConstants.HEAD_LENGTH;
+        frame.release();
+        return bodySize;
+    }
+
+    /**
+     * 重复的文本，可以压缩
+     */
+    private static String data(int length) {
+        StringBuilder data = new StringBuilder(length);
+        for (int i = 0; data.length() < length; i++) {
+            data.append("value-").append(i % 100).append(',');
+        }
+        data.setLength(length);
+        return data.toString();
+    }
+
+    private static RpcMessage response(int requestId, CompressTypeEnum compressType, String data) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                .compress(compressType.getCode())
+                .requestId(requestId)
+                .data(RpcResponse.success(data, null))
+                .build();
+    }
+}
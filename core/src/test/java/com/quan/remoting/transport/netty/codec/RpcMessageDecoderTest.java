@@ -0,0 +1,99 @@
+package com.quan.remoting.transport.netty.codec;
+
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.remoting.constants.RpcConstants;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Description: 批量帧在解码器中拆开，内部的帧必须完整，且不能再是批量帧
+ * date: 2026/10/19 上午 4:00
+ *
+ * @author Quan
+ */
+class RpcMessageDecoderTest {
+
+    @Test
+    void batchIsSplitInOrder() {
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+
+        decoder.writeInbound(encode(batch(response(1), response(2), response(3))));
+
+        for (int i = 1; i <= 3; i++) {
+            RpcMessage message = decoder.readInbound();
+            assertEquals(i, message.getRequestId());
+        }
+        assertNull(decoder.readInbound());
+    }
+
+    @Test
+    void nestedBatchIsRejected() {
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        ByteBuf outer = wrapInBatch(encode(batch(response(1), response(2))));
+
+        assertThrows(CorruptedFrameException.class, () -> decoder.writeInbound(outer));
+        assertNull(decoder.readInbound());
+    }
+
+    @Test
+    void innerFrameLongerThanTheBatchIsRejected() {
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        ByteBuf inner = encode(response(1));
+        inner.setInt(RpcConstants.MAGIC_NUMBER.length + 1, inner.readableBytes() + 100);
+
+        assertThrows(CorruptedFrameException.class, () -> decoder.writeInbound(wrapInBatch(inner)));
+    }
+
+    /**
+     * 手工加一个 batch 帧头，编码器不会产生这样的帧
+     */
+    private static ByteBuf wrapInBatch(ByteBuf frames) {
+        ByteBuf out = Unpooled.buffer();
+        out.writeBytes(RpcConstants.MAGIC_NUMBER);
+        out.writeByte(RpcConstants.VERSION);
+        out.writeInt(RpcConstants.HEAD_LENGTH + frames.readableBytes());
+        out.writeByte(RpcConstants.BATCH_TYPE);
+        out.writeByte(0);
+        out.writeByte(CompressTypeEnum.NONE.getCode());
+        out.writeInt(0);
+        out.writeBytes(frames);
+        frames.release();
+        return out;
+    }
+
+    private static ByteBuf encode(RpcMessage message) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        encoder.writeOutbound(message);
+        return encoder.readOutbound();
+    }
+
+    private static RpcMessage response(int requestId) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(requestId)
+                .data(RpcResponse.success("r" + requestId, null))
+                .build();
+    }
+
+    private static RpcMessage batch(RpcMessage... messages) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.BATCH_TYPE)
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(Arrays.asList(messages))
+                .build();
+    }
+}
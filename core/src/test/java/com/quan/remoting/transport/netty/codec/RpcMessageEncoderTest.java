@@ -0,0 +1,129 @@
+package com.quan.remoting.transport.netty.codec;
+
+import com.quan.enums.CompressTypeEnum;
+import com.quan.enums.SerializationTypeEnum;
+import com.quan.remoting.constants.RpcConstants;
+import com.quan.remoting.dto.RpcMessage;
+import com.quan.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 编码失败时不写出半个帧，write 的 promise 失败，同一连接上后面的消息不受影响；
+ * header 中带上配置的压缩类型
+ * date: 2026/10/19 上午 3:30
+ *
+ * @author Quan
+ */
+class RpcMessageEncoderTest {
+
+    @Test
+    void failedEncodeWritesNothingAndFailsThePromise() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder());
+
+        ChannelFuture future = channel.writeAndFlush(response(1, new NotSerializable()));
+
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof EncoderException);
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(response(2, "ok"));
+        RpcMessage decoded = decode(channel.readOutbound());
+        assertEquals(2, decoded.getRequestId());
+        assertEquals("ok", ((RpcResponse<?>) decoded.getData()).getData());
+    }
+
+    @Test
+    void failedMessageDiscardsTheWholeBatch() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder());
+
+        ChannelFuture future = channel.writeAndFlush(batch(response(1, "a"), response(2, new NotSerializable())));
+
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof EncoderException);
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(batch(response(3, "b"), response(4, "c")));
+        ByteBuf frame = channel.readOutbound();
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        decoder.writeInbound(frame);
+        assertEquals(3, ((RpcMessage) decoder.readInbound()).getRequestId());
+        assertEquals(4, ((RpcMessage) decoder.readInbound()).getRequestId());
+        assertNull(decoder.readInbound());
+    }
+
+    @Test
+    void configuredCompressTypeIsKeptWhenTheBodyIsTooSmallToCompress() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder());
+        RpcMessage small = response(1, "ok");
+        small.setCompress(CompressTypeEnum.GZIP.getCode());
+
+        channel.writeAndFlush(small);
+        ByteBuf frame = channel.readOutbound();
+
+        // 低 4 位：这一帧没有压缩
+        int compress = frame.getByte(RpcConstants.HEAD_LENGTH - 5);
+        assertEquals(CompressTypeEnum.NONE.getCode(), compress & 0x0F);
+        assertEquals(CompressTypeEnum.GZIP.getCode(), decode(frame).getCompress());
+    }
+
+    @Test
+    void largeBodyIsCompressedWithTheConfiguredType() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder());
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            data.append("value-").append(i % 10);
+        }
+        RpcMessage large = response(1, data.toString());
+        large.setCompress(CompressTypeEnum.GZIP.getCode());
+
+        channel.writeAndFlush(large);
+        ByteBuf frame = channel.readOutbound();
+
+        assertEquals(CompressTypeEnum.GZIP.getCode(), frame.getByte(RpcConstants.HEAD_LENGTH - 5) & 0x0F);
+        assertTrue(frame.readableBytes() < data.length());
+        RpcMessage decoded = decode(frame);
+        assertEquals(CompressTypeEnum.GZIP.getCode(), decoded.getCompress());
+        assertEquals(data.toString(), ((RpcResponse<?>) decoded.getData()).getData());
+    }
+
+    private static RpcMessage decode(ByteBuf frame) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        decoder.writeInbound(frame);
+        return decoder.readInbound();
+    }
+
+    private static RpcMessage response(int requestId, Object data) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(requestId)
+                .data(RpcResponse.success(data, null))
+                .build();
+    }
+
+    private static RpcMessage batch(RpcMessage... messages) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.BATCH_TYPE)
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(Arrays.asList(messages))
+                .build();
+    }
+
+    /**
+     * hessian 只序列化实现了 Serializable 的类
+     */
+    private static class NotSerializable {
+    }
+}
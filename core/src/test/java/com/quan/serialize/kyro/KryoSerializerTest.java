@@ -0,0 +1,83 @@
+package com.quan.serialize.kyro;
+
+import com.quan.exception.SerializeException;
+import com.quan.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Description: 服务类型注册 ID 冲突时只影响 kryo 中冲突的类型，其他类型照常使用
+ * date: 2026/10/19 上午 3:50
+ *
+ * @author Quan
+ */
+class KryoSerializerTest {
+
+    @Test
+    void registrationIdsAreStable() {
+        KryoSerializer client = new KryoSerializer();
+        KryoSerializer server = new KryoSerializer();
+        client.registerServiceTypes(Arrays.asList(Aa.class, Payload.class));
+        server.registerServiceTypes(Arrays.asList(Payload.class, Aa.class));
+
+        RpcResponse<?> response = server.deserialize(client.serialize(RpcResponse.success(new Payload("p"), null)), RpcResponse.class);
+
+        assertEquals("p", ((Payload) response.getData()).value);
+    }
+
+    @Test
+    void collisionDoesNotThrowAndOtherTypesKeepWorking() {
+        KryoSerializer serializer = new KryoSerializer();
+        serializer.registerServiceTypes(Arrays.asList(Aa.class, Payload.class));
+
+        // "Aa" 和 "BB" 的 hashCode 相同
+        serializer.registerServiceTypes(Collections.singletonList(BB.class));
+
+        assertTrue(roundTrip(serializer, new Aa()) instanceof Aa);
+        assertTrue(roundTrip(serializer, new BB()) instanceof BB);
+        assertEquals("p", ((Payload) roundTrip(serializer, new Payload("p"))).value);
+    }
+
+    @Test
+    void ambiguousIdIsNotReadAsTheOtherType() {
+        // 对端只用到 BB，按 ID 写出；本端同时注册了 Aa 和 BB，无法确定对端指的是哪个
+        KryoSerializer peer = new KryoSerializer();
+        peer.registerServiceTypes(Collections.singletonList(BB.class));
+        KryoSerializer local = new KryoSerializer();
+        local.registerServiceTypes(Collections.singletonList(Aa.class));
+        local.registerServiceTypes(Collections.singletonList(BB.class));
+
+        byte[] bytes = peer.serialize(RpcResponse.success(new BB(), null));
+
+        assertThrows(SerializeException.class, () -> local.deserialize(bytes, RpcResponse.class));
+        // 本端写出的 BB 带类名，对端可以读
+        assertTrue(peer.deserialize(local.serialize(RpcResponse.success(new BB(), null)), RpcResponse.class).getData() instanceof BB);
+    }
+
+    private static Object roundTrip(KryoSerializer serializer, Object data) {
+        return serializer.deserialize(serializer.serialize(RpcResponse.success(data, null)), RpcResponse.class).getData();
+    }
+
+    static class Aa {
+    }
+
+    static class BB {
+    }
+
+    static class Payload {
+        String value;
+
+        Payload() {
+        }
+
+        Payload(String value) {
+            this.value = value;
+        }
+    }
+}